@@ -1,6 +1,8 @@
 package com.jacky.config;
 
 import com.jacky.domain.User;
+import com.jacky.orm.SlowQueryJdbcTemplate;
+import com.jacky.orm.SlowQueryLog;
 import com.jacky.service.UserService;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
@@ -63,10 +65,24 @@ public class JdbcConfig {
     @Autowired
     DataSource dataSource;
 
+    //记录超过阈值的慢查询，写入内存环形缓冲区和滚动日志文件；
+    @Bean
+    SlowQueryLog createSlowQueryLog(@Autowired DataSource dataSource,
+            @Value("${jdbc.slowQueryMillis:200}") long slowQueryMillis,
+            @Value("${jdbc.slowQueryLogFile:}") String slowQueryLogFile){
+        SlowQueryLog slowQueryLog = new SlowQueryLog(dataSource, slowQueryMillis, 100);
+        //未配置jdbc.slowQueryLogFile时只记录在内存中：
+        if (!slowQueryLogFile.isEmpty()) {
+            slowQueryLog.setFile(slowQueryLogFile, 10 * 1024 * 1024, 5);
+        }
+        return slowQueryLog;
+    }
+
     //创建一个JdbcTemplate实例，它需要注入DataSource，这是通过方法参数完成注入的。
+    //SlowQueryJdbcTemplate会把AbstractDao等执行的慢查询记录到SlowQueryLog。
     @Bean
-    JdbcTemplate createJdbcTemplate(@Autowired DataSource dataSource){
-        return new JdbcTemplate(dataSource);
+    JdbcTemplate createJdbcTemplate(@Autowired DataSource dataSource, @Autowired SlowQueryLog slowQueryLog){
+        return new SlowQueryJdbcTemplate(dataSource, slowQueryLog);
     }
 
     //创建一个DataSource实例，它的实际类型是HikariDataSource，创建时需要用到注入的配置；
@@ -3,6 +3,8 @@ package com.jacky.config;
 import com.jacky.domain.AbstractEntity;
 import com.jacky.domain.ORMUser;
 import com.jacky.orm.DbTemplate;
+import com.jacky.orm.SlowQueryJdbcTemplate;
+import com.jacky.orm.SlowQueryLog;
 import com.jacky.service.ORMUserService;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
@@ -74,14 +76,29 @@ public class MyORMConfig {
         return new HikariDataSource(config);
     }
 
+    // 记录超过阈值的慢查询，写入内存环形缓冲区和滚动日志文件:
     @Bean
-    JdbcTemplate createJdbcTemplate(@Autowired DataSource dataSource) {
-        return new JdbcTemplate(dataSource);
+    SlowQueryLog createSlowQueryLog(@Autowired DataSource dataSource,
+            @Value("${jdbc.slowQueryMillis:200}") long slowQueryMillis,
+            @Value("${jdbc.slowQueryLogFile:}") String slowQueryLogFile) {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(dataSource, slowQueryMillis, 100);
+        // 未配置jdbc.slowQueryLogFile时只记录在内存中:
+        if (!slowQueryLogFile.isEmpty()) {
+            slowQueryLog.setFile(slowQueryLogFile, 10 * 1024 * 1024, 5);
+        }
+        return slowQueryLog;
+    }
+
+    @Bean
+    JdbcTemplate createJdbcTemplate(@Autowired DataSource dataSource, @Autowired SlowQueryLog slowQueryLog) {
+        return new SlowQueryJdbcTemplate(dataSource, slowQueryLog);
     }
 
     @Bean
-    DbTemplate createDbTemplate(@Autowired JdbcTemplate jdbcTemplate) {
-        return new DbTemplate(jdbcTemplate, "com.jacky.domain");
+    DbTemplate createDbTemplate(@Autowired JdbcTemplate jdbcTemplate, @Autowired SlowQueryLog slowQueryLog) {
+        DbTemplate dbTemplate = new DbTemplate(jdbcTemplate, "com.jacky.domain");
+        dbTemplate.setSlowQueryLog(slowQueryLog);
+        return dbTemplate;
     }
 
     @Bean
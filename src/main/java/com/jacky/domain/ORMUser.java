@@ -1,5 +1,6 @@
 package com.jacky.domain;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Table;
@@ -11,6 +12,7 @@ import javax.persistence.Table;
  */
 
 @Entity
+@Cacheable
 @Table(name = "users")
 public class ORMUser extends AbstractEntity {
     private String email;
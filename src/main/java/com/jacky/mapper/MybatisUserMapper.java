@@ -3,6 +3,7 @@ package com.jacky.mapper;
 import com.jacky.domain.MybatisUser;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -14,6 +15,10 @@ public interface MybatisUserMapper {
     @Select("SELECT * FROM users WHERE id = #{id}")
     MybatisUser getById(@Param("id") long id);
 
+    @Select("<script>SELECT * FROM users WHERE id IN "
+            + "<foreach item='id' collection='ids' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<MybatisUser> getByIds(@Param("ids") Collection<Long> ids);
+
     @Select("SELECT * FROM users WHERE email = #{email}")
     MybatisUser getByEmail(@Param("email") String email);
 
@@ -1,12 +1,23 @@
 package com.jacky.orm;
 
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 /**
  * Represent a bean property.
@@ -19,6 +30,20 @@ class AccessibleProperty {
 	final Method getter;
 	final Method setter;
 
+	// fast accessors bound once by Accessors:
+	private final Function<Object, Object> reader;
+	private final BiConsumer<Object, Object> writer;
+
+	// mutable value which cannot be copied for snapshot, never equals to any value:
+	static final Object UNCOMPARABLE = new Object();
+
+	// copy value for snapshot of dirty checking:
+	private final UnaryOperator<Object> snapshotCopier;
+
+	// typed JDBC binders by property type:
+	private final Binders.Binder binder;
+	private final Binders.ValueBinder valueBinder;
+
 	// java type:
 	final Class<?> propertyType;
 
@@ -28,16 +53,162 @@ class AccessibleProperty {
 	// table column name:
 	final String columnName;
 
+	// flags read from annotations or entity index:
+	private final boolean id;
+	private final boolean identityId;
+	private final boolean version;
+	private final boolean insertable;
+	private final boolean updatable;
+	private final boolean unique;
+
 	boolean isId() {
-		return this.getter.isAnnotationPresent(Id.class);
+		return this.id;
 	}
 
 	// is id && is id marked as @GeneratedValue(strategy=GenerationType.IDENTITY)
 	boolean isIdentityId() {
-		if (!isId()) {
+		return this.identityId;
+	}
+
+	// is marked as @Version:
+	boolean isVersion() {
+		return this.version;
+	}
+
+	boolean isInsertable() {
+		return this.insertable;
+	}
+
+	boolean isUpdatable() {
+		return this.updatable;
+	}
+
+	// @Column(unique = true):
+	boolean isUnique() {
+		return this.unique;
+	}
+
+	// length, precision and scale of @Column, used to declare SQL types:
+	final int length;
+	final int precision;
+	final int scale;
+
+	public AccessibleProperty(PropertyDescriptor pd) {
+		this(pd.getReadMethod(), pd.getWriteMethod(), pd.getName(),
+				getColumnName(pd.getReadMethod(), pd.getName()), pd.getReadMethod().isAnnotationPresent(Id.class),
+				isIdentityId(pd.getReadMethod()), pd.getReadMethod().isAnnotationPresent(Version.class),
+				isInsertable(pd.getReadMethod()), isUpdatable(pd.getReadMethod()), isUnique(pd.getReadMethod()),
+				getLength(pd.getReadMethod()), getPrecision(pd.getReadMethod()), getScale(pd.getReadMethod()));
+	}
+
+	AccessibleProperty(Method getter, Method setter, String propertyName, String columnName, boolean id,
+			boolean identityId, boolean version, boolean insertable, boolean updatable, boolean unique, int length,
+			int precision, int scale) {
+		this.getter = getter;
+		this.setter = setter;
+		this.propertyType = getter.getReturnType();
+		this.propertyName = propertyName;
+		this.columnName = columnName;
+		this.id = id;
+		this.identityId = identityId;
+		this.version = version;
+		this.insertable = insertable;
+		this.updatable = updatable;
+		this.unique = unique;
+		this.length = length;
+		this.precision = precision;
+		this.scale = scale;
+		this.reader = Accessors.getter(this.getter);
+		this.writer = Accessors.setter(this.setter);
+		this.binder = Binders.binder(this.getter);
+		this.valueBinder = Binders.valueBinder(this.propertyType);
+		this.snapshotCopier = snapshotCopier(this.propertyType);
+	}
+
+	/**
+	 * Get property value of bean.
+	 * 
+	 * @param bean The entity.
+	 * @return Property value.
+	 */
+	Object get(Object bean) {
+		return this.reader.apply(bean);
+	}
+
+	/**
+	 * Set property value of bean.
+	 * 
+	 * @param bean  The entity.
+	 * @param value Property value.
+	 */
+	void set(Object bean, Object value) {
+		this.writer.accept(bean, value);
+	}
+
+	/**
+	 * Set property value of bean as parameter of PreparedStatement.
+	 * 
+	 * @param ps    The PreparedStatement.
+	 * @param index Parameter index starts from 1.
+	 * @param bean  The entity.
+	 */
+	void bind(PreparedStatement ps, int index, Object bean) throws SQLException {
+		this.binder.bind(ps, index, bean);
+	}
+
+	/**
+	 * Set value of this property as parameter of PreparedStatement.
+	 * 
+	 * @param ps    The PreparedStatement.
+	 * @param index Parameter index starts from 1.
+	 * @param value Property value, may be null.
+	 */
+	void bindValue(PreparedStatement ps, int index, Object value) throws SQLException {
+		this.valueBinder.bind(ps, index, value);
+	}
+
+	/**
+	 * Get value kept in snapshot for dirty checking. Mutable values are copied,
+	 * so changes made in place are detected.
+	 * 
+	 * @param value Property value.
+	 * @return Value or its copy, or UNCOMPARABLE if value cannot be copied.
+	 */
+	Object snapshotValue(Object value) {
+		return value == null ? null : this.snapshotCopier.apply(value);
+	}
+
+	private static UnaryOperator<Object> snapshotCopier(Class<?> type) {
+		if (isImmutable(type)) {
+			return UnaryOperator.identity();
+		}
+		if (Date.class.isAssignableFrom(type)) {
+			return (value) -> ((Date) value).clone();
+		}
+		if (type.isArray() && isImmutable(type.getComponentType())) {
+			return (value) -> {
+				int length = Array.getLength(value);
+				Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+				System.arraycopy(value, 0, copy, 0, length);
+				return copy;
+			};
+		}
+		// unknown type may be changed in place, always treat as dirty:
+		return (value) -> UNCOMPARABLE;
+	}
+
+	private static boolean isImmutable(Class<?> type) {
+		return type.isPrimitive() || type.isEnum() || type == String.class || type == Boolean.class
+				|| type == Character.class || Number.class.isAssignableFrom(type) && type.getName().startsWith("java.lang.")
+				|| type == BigDecimal.class || type == BigInteger.class || type == UUID.class
+				|| type.getName().startsWith("java.time.");
+	}
+
+	private static boolean isIdentityId(Method getter) {
+		if (!getter.isAnnotationPresent(Id.class)) {
 			return false;
 		}
-		GeneratedValue gv = this.getter.getAnnotation(GeneratedValue.class);
+		GeneratedValue gv = getter.getAnnotation(GeneratedValue.class);
 		if (gv == null) {
 			return false;
 		}
@@ -45,28 +216,42 @@ class AccessibleProperty {
 		return gt == GenerationType.IDENTITY;
 	}
 
-	boolean isInsertable() {
-		if (isIdentityId()) {
+	private static boolean isInsertable(Method getter) {
+		if (isIdentityId(getter)) {
 			return false;
 		}
-		Column col = this.getter.getAnnotation(Column.class);
+		Column col = getter.getAnnotation(Column.class);
 		return col == null || col.insertable();
 	}
 
-	boolean isUpdatable() {
-		if (isId()) {
+	// version is increased by update statement, not set by bean:
+	private static boolean isUpdatable(Method getter) {
+		if (getter.isAnnotationPresent(Id.class) || getter.isAnnotationPresent(Version.class)) {
 			return false;
 		}
-		Column col = this.getter.getAnnotation(Column.class);
+		Column col = getter.getAnnotation(Column.class);
 		return col == null || col.updatable();
 	}
 
-	public AccessibleProperty(PropertyDescriptor pd) {
-		this.getter = pd.getReadMethod();
-		this.setter = pd.getWriteMethod();
-		this.propertyType = pd.getReadMethod().getReturnType();
-		this.propertyName = pd.getName();
-		this.columnName = getColumnName(pd.getReadMethod(), propertyName);
+	private static boolean isUnique(Method getter) {
+		Column col = getter.getAnnotation(Column.class);
+		return col != null && col.unique();
+	}
+
+	// length, precision and scale of @Column, or default values of @Column:
+	private static int getLength(Method getter) {
+		Column col = getter.getAnnotation(Column.class);
+		return col == null ? 255 : col.length();
+	}
+
+	private static int getPrecision(Method getter) {
+		Column col = getter.getAnnotation(Column.class);
+		return col == null ? 0 : col.precision();
+	}
+
+	private static int getScale(Method getter) {
+		Column col = getter.getAnnotation(Column.class);
+		return col == null ? 0 : col.scale();
 	}
 
 	private static String getColumnName(Method m, String defaultName) {
@@ -0,0 +1,292 @@
+package com.jacky.orm;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import javax.persistence.PersistenceException;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * Build fast accessors for bean properties.
+ *
+ * Getters, setters and the default constructor are bound once by
+ * LambdaMetafactory, so each call is a plain interface call instead of
+ * Method.invoke(). Falls back to reflection if the target is not accessible
+ * from this package.
+ */
+final class Accessors {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private Accessors() {
+	}
+
+	/**
+	 * Create getter function for method like "getName()".
+	 *
+	 * @param getter The getter method.
+	 * @return Function that accept bean and return property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static Function<Object, Object> getter(Method getter) {
+		try {
+			MethodHandle mh = LOOKUP.unreflect(getter);
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+					MethodType.methodType(Object.class, Object.class), mh,
+					MethodType.methodType(ClassUtils.resolvePrimitiveIfNecessary(getter.getReturnType()), getter.getDeclaringClass()));
+			return (Function<Object, Object>) site.getTarget().invokeExact();
+		} catch (Throwable t) {
+			return (bean) -> {
+				try {
+					return getter.invoke(bean);
+				} catch (InvocationTargetException e) {
+					throw new PersistenceException(e.getCause());
+				} catch (ReflectiveOperationException e) {
+					throw new PersistenceException(e);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Create getter function for method like "long getId()" which returns
+	 * primitive value without boxing.
+	 *
+	 * @param getter The getter method returns long.
+	 * @return ToLongFunction that accept bean and return property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static ToLongFunction<Object> longGetter(Method getter) {
+		ToLongFunction<Object> f = (ToLongFunction<Object>) primitiveGetter(getter, ToLongFunction.class,
+				"applyAsLong", long.class);
+		if (f == null) {
+			Function<Object, Object> g = getter(getter);
+			f = (bean) -> ((Long) g.apply(bean)).longValue();
+		}
+		return f;
+	}
+
+	/**
+	 * Create getter function for method like "int getAge()".
+	 *
+	 * @param getter The getter method returns int.
+	 * @return ToIntFunction that accept bean and return property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static ToIntFunction<Object> intGetter(Method getter) {
+		ToIntFunction<Object> f = (ToIntFunction<Object>) primitiveGetter(getter, ToIntFunction.class, "applyAsInt",
+				int.class);
+		if (f == null) {
+			Function<Object, Object> g = getter(getter);
+			f = (bean) -> ((Integer) g.apply(bean)).intValue();
+		}
+		return f;
+	}
+
+	/**
+	 * Create getter function for method like "double getScore()".
+	 *
+	 * @param getter The getter method returns double.
+	 * @return ToDoubleFunction that accept bean and return property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static ToDoubleFunction<Object> doubleGetter(Method getter) {
+		ToDoubleFunction<Object> f = (ToDoubleFunction<Object>) primitiveGetter(getter, ToDoubleFunction.class,
+				"applyAsDouble", double.class);
+		if (f == null) {
+			Function<Object, Object> g = getter(getter);
+			f = (bean) -> ((Double) g.apply(bean)).doubleValue();
+		}
+		return f;
+	}
+
+	/**
+	 * Create getter function for method like "boolean isActive()".
+	 *
+	 * @param getter The getter method returns boolean.
+	 * @return Predicate that accept bean and return property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static Predicate<Object> booleanGetter(Method getter) {
+		Predicate<Object> f = (Predicate<Object>) primitiveGetter(getter, Predicate.class, "test", boolean.class);
+		if (f == null) {
+			Function<Object, Object> g = getter(getter);
+			f = (bean) -> ((Boolean) g.apply(bean)).booleanValue();
+		}
+		return f;
+	}
+
+	// bind getter to functional interface whose method is "primitive name(Object)", or null if failed:
+	private static Object primitiveGetter(Method getter, Class<?> type, String name, Class<?> primitive) {
+		try {
+			MethodHandle mh = LOOKUP.unreflect(getter);
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(type),
+					MethodType.methodType(primitive, Object.class), mh,
+					MethodType.methodType(primitive, getter.getDeclaringClass()));
+			return site.getTarget().invoke();
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * Create setter function for method like "setName(String)".
+	 *
+	 * @param setter The setter method.
+	 * @return BiConsumer that accept bean and property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static BiConsumer<Object, Object> setter(Method setter) {
+		try {
+			MethodHandle mh = LOOKUP.unreflect(setter);
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+					MethodType.methodType(void.class, Object.class, Object.class), mh,
+					MethodType.methodType(void.class, setter.getDeclaringClass(),
+							ClassUtils.resolvePrimitiveIfNecessary(setter.getParameterTypes()[0])));
+			return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+		} catch (Throwable t) {
+			return (bean, value) -> {
+				try {
+					setter.invoke(bean, value);
+				} catch (InvocationTargetException e) {
+					throw new PersistenceException(e.getCause());
+				} catch (ReflectiveOperationException e) {
+					throw new PersistenceException(e);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Create setter function for method like "setId(long)" which accepts
+	 * primitive value without boxing.
+	 *
+	 * @param setter The setter method accepts long.
+	 * @return ObjLongConsumer that accept bean and property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static ObjLongConsumer<Object> longSetter(Method setter) {
+		ObjLongConsumer<Object> f = (ObjLongConsumer<Object>) primitiveSetter(setter, ObjLongConsumer.class,
+				"accept", long.class);
+		if (f == null) {
+			BiConsumer<Object, Object> s = setter(setter);
+			f = (bean, value) -> s.accept(bean, value);
+		}
+		return f;
+	}
+
+	/**
+	 * Create setter function for method like "setAge(int)".
+	 *
+	 * @param setter The setter method accepts int.
+	 * @return ObjIntConsumer that accept bean and property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static ObjIntConsumer<Object> intSetter(Method setter) {
+		ObjIntConsumer<Object> f = (ObjIntConsumer<Object>) primitiveSetter(setter, ObjIntConsumer.class, "accept",
+				int.class);
+		if (f == null) {
+			BiConsumer<Object, Object> s = setter(setter);
+			f = (bean, value) -> s.accept(bean, value);
+		}
+		return f;
+	}
+
+	/**
+	 * Create setter function for method like "setScore(double)".
+	 *
+	 * @param setter The setter method accepts double.
+	 * @return ObjDoubleConsumer that accept bean and property value.
+	 */
+	@SuppressWarnings("unchecked")
+	static ObjDoubleConsumer<Object> doubleSetter(Method setter) {
+		ObjDoubleConsumer<Object> f = (ObjDoubleConsumer<Object>) primitiveSetter(setter, ObjDoubleConsumer.class,
+				"accept", double.class);
+		if (f == null) {
+			BiConsumer<Object, Object> s = setter(setter);
+			f = (bean, value) -> s.accept(bean, value);
+		}
+		return f;
+	}
+
+	/**
+	 * Accept bean and boolean value, which has no functional interface in JDK.
+	 */
+	@FunctionalInterface
+	interface ObjBooleanConsumer {
+
+		void accept(Object bean, boolean value);
+	}
+
+	/**
+	 * Create setter function for method like "setActive(boolean)".
+	 *
+	 * @param setter The setter method accepts boolean.
+	 * @return ObjBooleanConsumer that accept bean and property value.
+	 */
+	static ObjBooleanConsumer booleanSetter(Method setter) {
+		ObjBooleanConsumer f = (ObjBooleanConsumer) primitiveSetter(setter, ObjBooleanConsumer.class, "accept",
+				boolean.class);
+		if (f == null) {
+			BiConsumer<Object, Object> s = setter(setter);
+			f = (bean, value) -> s.accept(bean, value);
+		}
+		return f;
+	}
+
+	// bind setter to functional interface whose method is "void name(Object, primitive)", or null if failed:
+	private static Object primitiveSetter(Method setter, Class<?> type, String name, Class<?> primitive) {
+		try {
+			MethodHandle mh = LOOKUP.unreflect(setter);
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(type),
+					MethodType.methodType(void.class, Object.class, primitive), mh,
+					MethodType.methodType(void.class, setter.getDeclaringClass(), primitive));
+			return site.getTarget().invoke();
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * Create supplier that calls the public no-arg constructor.
+	 *
+	 * @param <T>   Generic type.
+	 * @param clazz The bean class.
+	 * @return Supplier of new bean instance.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Supplier<T> constructor(Class<T> clazz) {
+		try {
+			MethodHandle mh = LOOKUP.findConstructor(clazz, MethodType.methodType(void.class));
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class),
+					MethodType.methodType(Object.class), mh, MethodType.methodType(clazz));
+			return (Supplier<T>) site.getTarget().invokeExact();
+		} catch (Throwable t) {
+			return () -> {
+				try {
+					return clazz.getDeclaredConstructor().newInstance();
+				} catch (InvocationTargetException e) {
+					throw new PersistenceException(e.getCause());
+				} catch (ReflectiveOperationException e) {
+					throw new PersistenceException(e);
+				}
+			};
+		}
+	}
+}
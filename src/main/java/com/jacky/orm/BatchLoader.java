@@ -0,0 +1,189 @@
+package com.jacky.orm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collect lookups by key and load them in batches.
+ *
+ * load() only queues the key and returns a future. Queued keys are loaded by
+ * the batch function when dispatch() is called, when maxBatchSize keys are
+ * queued, or after the window if a scheduler is set. Futures are kept by key
+ * for the lifetime of the loader, so the same key loaded twice is loaded only
+ * once, unless its load failed. Keys not found complete with null.
+ *
+ * A loader is meant to live in one request scope, e.g. created at the start of
+ * a request and dispatched before the results are used, because it keeps all
+ * loaded values.
+ *
+ * The batch function runs on the thread which dispatches. Dispatch by the
+ * scheduler runs on the scheduler thread, outside the transaction and session
+ * of the thread which called load(), so the batch function must not depend on
+ * them.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public final class BatchLoader<K, V> {
+
+	private final Function<Collection<K>, Map<K, V>> batchFunction;
+	private final int maxBatchSize;
+	private final ScheduledExecutorService scheduler;
+	private final long windowMillis;
+
+	// key -> future of all keys loaded by this loader:
+	private final Map<K, CompletableFuture<V>> futures = new HashMap<>();
+
+	// key -> future not yet dispatched, in the order of load():
+	private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+
+	// increased when pending keys are taken, so a scheduled dispatch of an
+	// earlier window does nothing:
+	private long window = 0;
+	private boolean scheduled = false;
+
+	/**
+	 * Create loader which is dispatched manually or by batch size.
+	 *
+	 * @param batchFunction Load values by keys, return map of key and value.
+	 * @param maxBatchSize  Max keys passed to batch function at once.
+	 */
+	public BatchLoader(Function<Collection<K>, Map<K, V>> batchFunction, int maxBatchSize) {
+		this(batchFunction, maxBatchSize, null, 0);
+	}
+
+	/**
+	 * Create loader which is also dispatched after the window since the first
+	 * key is queued. The scheduled dispatch runs the batch function on the
+	 * scheduler thread, not in the transaction of the caller.
+	 *
+	 * @param batchFunction Load values by keys, return map of key and value.
+	 * @param maxBatchSize  Max keys passed to batch function at once.
+	 * @param scheduler     Scheduler to run dispatch, or null.
+	 * @param windowMillis  The window in milliseconds.
+	 */
+	public BatchLoader(Function<Collection<K>, Map<K, V>> batchFunction, int maxBatchSize,
+			ScheduledExecutorService scheduler, long windowMillis) {
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("maxBatchSize must be > 0.");
+		}
+		this.batchFunction = batchFunction;
+		this.maxBatchSize = maxBatchSize;
+		this.scheduler = scheduler;
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Queue key to be loaded.
+	 *
+	 * @param key The key.
+	 * @return Future of value, completed with null if not found.
+	 */
+	public CompletableFuture<V> load(K key) {
+		boolean full;
+		CompletableFuture<V> future;
+		synchronized (this) {
+			future = this.futures.get(key);
+			if (future != null) {
+				return future;
+			}
+			future = new CompletableFuture<>();
+			this.futures.put(key, future);
+			this.pending.put(key, future);
+			full = this.pending.size() >= this.maxBatchSize;
+			if (!full && this.scheduler != null && !this.scheduled) {
+				this.scheduled = true;
+				final long current = this.window;
+				this.scheduler.schedule(() -> dispatch(current), this.windowMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		if (full) {
+			dispatch();
+		}
+		return future;
+	}
+
+	/**
+	 * Queue keys to be loaded.
+	 *
+	 * @param keys The keys.
+	 * @return Futures of values in the order of keys.
+	 */
+	public List<CompletableFuture<V>> loadMany(Collection<K> keys) {
+		List<CompletableFuture<V>> futures = new ArrayList<>(keys.size());
+		for (K key : keys) {
+			futures.add(load(key));
+		}
+		return futures;
+	}
+
+	/**
+	 * Load all queued keys and complete their futures.
+	 */
+	public void dispatch() {
+		Map<K, CompletableFuture<V>> batch;
+		synchronized (this) {
+			batch = takePending();
+		}
+		load(batch);
+	}
+
+	// scheduled dispatch of the window, which is skipped if keys of the window
+	// were already taken:
+	private void dispatch(long scheduledWindow) {
+		Map<K, CompletableFuture<V>> batch;
+		synchronized (this) {
+			if (this.window != scheduledWindow) {
+				return;
+			}
+			batch = takePending();
+		}
+		load(batch);
+	}
+
+	// take pending keys and close the window, must hold lock:
+	private Map<K, CompletableFuture<V>> takePending() {
+		Map<K, CompletableFuture<V>> batch = this.pending;
+		this.pending = new LinkedHashMap<>();
+		this.window++;
+		this.scheduled = false;
+		return batch;
+	}
+
+	private void load(Map<K, CompletableFuture<V>> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<K> keys = new ArrayList<>(batch.keySet());
+		for (int start = 0; start < keys.size(); start += this.maxBatchSize) {
+			List<K> chunk = keys.subList(start, Math.min(keys.size(), start + this.maxBatchSize));
+			Map<K, V> values;
+			try {
+				values = this.batchFunction.apply(chunk);
+			} catch (Throwable t) {
+				// never leave futures uncompleted, e.g. on error thrown by scheduled dispatch,
+				// and load failed keys again by next load():
+				synchronized (this) {
+					for (K key : chunk) {
+						this.futures.remove(key, batch.get(key));
+					}
+				}
+				for (K key : chunk) {
+					batch.get(key).completeExceptionally(t);
+				}
+				continue;
+			}
+			for (K key : chunk) {
+				batch.get(key).complete(values == null ? null : values.get(key));
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.jacky.orm;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Build typed binders which set bean property as JDBC parameter.
+ *
+ * Primitive properties are read by typed getters and bound by setLong(),
+ * setInt() and so on, without boxing. Boxed and String properties are bound by
+ * typed setters, or setNull() with the SQL type of the property. Other types
+ * fall back to setObject().
+ */
+final class Binders {
+
+	private Binders() {
+	}
+
+	/**
+	 * Set property of bean as parameter of PreparedStatement.
+	 */
+	@FunctionalInterface
+	interface Binder {
+
+		void bind(PreparedStatement ps, int index, Object bean) throws SQLException;
+	}
+
+	/**
+	 * Create binder for property by getter.
+	 *
+	 * @param getter The getter method.
+	 * @return Binder of the property.
+	 */
+	static Binder binder(Method getter) {
+		Class<?> type = getter.getReturnType();
+		if (type == long.class) {
+			ToLongFunction<Object> g = Accessors.longGetter(getter);
+			return (ps, index, bean) -> ps.setLong(index, g.applyAsLong(bean));
+		}
+		if (type == int.class) {
+			ToIntFunction<Object> g = Accessors.intGetter(getter);
+			return (ps, index, bean) -> ps.setInt(index, g.applyAsInt(bean));
+		}
+		if (type == double.class) {
+			ToDoubleFunction<Object> g = Accessors.doubleGetter(getter);
+			return (ps, index, bean) -> ps.setDouble(index, g.applyAsDouble(bean));
+		}
+		if (type == boolean.class) {
+			Predicate<Object> g = Accessors.booleanGetter(getter);
+			return (ps, index, bean) -> ps.setBoolean(index, g.test(bean));
+		}
+		Function<Object, Object> g = Accessors.getter(getter);
+		ValueBinder vb = valueBinder(type);
+		return (ps, index, bean) -> vb.bind(ps, index, g.apply(bean));
+	}
+
+	/**
+	 * Set value of known type as parameter of PreparedStatement.
+	 */
+	@FunctionalInterface
+	interface ValueBinder {
+
+		void bind(PreparedStatement ps, int index, Object value) throws SQLException;
+	}
+
+	/**
+	 * Create binder for value of property type.
+	 *
+	 * @param type The property type.
+	 * @return ValueBinder of the type.
+	 */
+	static ValueBinder valueBinder(Class<?> type) {
+		if (type == String.class) {
+			return (ps, index, value) -> {
+				if (value == null) {
+					ps.setNull(index, Types.VARCHAR);
+				} else {
+					ps.setString(index, (String) value);
+				}
+			};
+		}
+		if (type == long.class || type == Long.class) {
+			return (ps, index, value) -> {
+				if (value == null) {
+					ps.setNull(index, Types.BIGINT);
+				} else {
+					ps.setLong(index, ((Long) value).longValue());
+				}
+			};
+		}
+		if (type == int.class || type == Integer.class) {
+			return (ps, index, value) -> {
+				if (value == null) {
+					ps.setNull(index, Types.INTEGER);
+				} else {
+					ps.setInt(index, ((Integer) value).intValue());
+				}
+			};
+		}
+		if (type == double.class || type == Double.class) {
+			return (ps, index, value) -> {
+				if (value == null) {
+					ps.setNull(index, Types.DOUBLE);
+				} else {
+					ps.setDouble(index, ((Double) value).doubleValue());
+				}
+			};
+		}
+		if (type == boolean.class || type == Boolean.class) {
+			return (ps, index, value) -> {
+				if (value == null) {
+					ps.setNull(index, Types.BOOLEAN);
+				} else {
+					ps.setBoolean(index, ((Boolean) value).booleanValue());
+				}
+			};
+		}
+		return PreparedStatement::setObject;
+	}
+
+	/**
+	 * Set value of unknown type, e.g. argument of where clause, as parameter of
+	 * PreparedStatement.
+	 *
+	 * @param ps    The PreparedStatement.
+	 * @param index Parameter index starts from 1.
+	 * @param value The value, may be null.
+	 */
+	static void setValue(PreparedStatement ps, int index, Object value) throws SQLException {
+		if (value instanceof String) {
+			ps.setString(index, (String) value);
+		} else if (value instanceof Long) {
+			ps.setLong(index, ((Long) value).longValue());
+		} else if (value instanceof Integer) {
+			ps.setInt(index, ((Integer) value).intValue());
+		} else {
+			ps.setObject(index, value);
+		}
+	}
+}
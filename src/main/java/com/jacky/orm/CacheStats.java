@@ -0,0 +1,51 @@
+package com.jacky.orm;
+
+/**
+ * Snapshot of cache statistics.
+ */
+public final class CacheStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long size;
+
+	CacheStats(long hitCount, long missCount, long evictionCount, long size) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Get hit rate between 0 and 1, or 0 if no request.
+	 * 
+	 * @return Hit rate.
+	 */
+	public double getHitRate() {
+		long total = hitCount + missCount;
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CacheStats[hits=%s, misses=%s, evictions=%s, size=%s]", hitCount, missCount,
+				evictionCount, size);
+	}
+}
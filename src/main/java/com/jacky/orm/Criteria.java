@@ -2,10 +2,19 @@ package com.jacky.orm;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
 
+import org.reactivestreams.Publisher;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.ClassUtils;
+
 /**
  * Hold criteria query information.
  * 
@@ -26,23 +35,69 @@ final class Criteria<T> {
 	List<String> orderBy = null;
 	int offset = 0;
 	int maxResults = 0;
+	// keyset pagination: order by values of last row of previous page
+	Object[] seekAfter = null;
+	// keyset pagination appends id to order by when building SQL:
+	boolean keyset = false;
+	// use query result cache:
+	boolean cached = false;
 
 	Criteria(DbTemplate db) {
 		this.db = db;
 	}
 
+	// copy for building SQL of other limit without changing this criteria:
+	Criteria<T> copy() {
+		Criteria<T> c = new Criteria<>(this.db);
+		c.mapper = this.mapper;
+		c.clazz = this.clazz;
+		c.select = this.select;
+		c.distinct = this.distinct;
+		c.table = this.table;
+		c.where = this.where;
+		c.whereParams = this.whereParams;
+		c.orderBy = this.orderBy;
+		c.offset = this.offset;
+		c.maxResults = this.maxResults;
+		c.seekAfter = this.seekAfter;
+		c.keyset = this.keyset;
+		c.cached = this.cached;
+		return c;
+	}
+
 	String sql() {
+		Shape shape = new Shape(this);
+		String s = db.sqlCache.get(shape);
+		if (s == null) {
+			s = buildSql();
+			db.sqlCache.put(shape.copy(), s);
+		}
+		return s;
+	}
+
+	String buildSql() {
 		StringBuilder sb = new StringBuilder(128);
 		sb.append("SELECT ");
 		sb.append((select == null ? "*" : String.join(", ", select)));
 		sb.append(" FROM ").append(mapper.tableName);
-		if (where != null) {
+		if (seekAfter != null) {
+			sb.append(" WHERE ");
+			if (where != null) {
+				sb.append("(").append(where).append(") AND ");
+			}
+			sb.append(seekClause());
+		} else if (where != null) {
 			sb.append(" WHERE ").append(String.join(" ", where));
 		}
-		if (orderBy != null) {
-			sb.append(" ORDER BY ").append(String.join(", ", orderBy));
+		List<String> orders = orderByList();
+		if (orders != null) {
+			sb.append(" ORDER BY ").append(String.join(", ", orders));
 		}
-		if (offset >= 0 && maxResults > 0) {
+		if (seekAfter != null) {
+			if (maxResults > 0) {
+				sb.append(" LIMIT ?");
+			}
+		} else if (offset >= 0 && maxResults > 0) {
 			sb.append(" LIMIT ?, ?");
 		}
 		String s = sb.toString();
@@ -50,27 +105,128 @@ final class Criteria<T> {
 	}
 
 	Object[] params() {
-		List<Object> params = new ArrayList<>();
-		if (where != null) {
-			for (Object obj : whereParams) {
-				if (obj == null) {
-					params.add(null);
-				} else {
-					params.add(obj);
+		int whereSize = where == null ? 0 : whereParams.size();
+		int seekSize = 0;
+		if (seekAfter != null) {
+			for (int i = 0; i < seekAfter.length; i++) {
+				for (int j = 0; j <= i; j++) {
+					if (seekAfter[j] != null) {
+						seekSize++;
+					}
 				}
 			}
 		}
-		if (offset >= 0 && maxResults > 0) {
-			params.add(offset);
-			params.add(maxResults);
+		int limitSize = maxResults <= 0 ? 0 : (seekAfter != null ? 1 : (offset >= 0 ? 2 : 0));
+		Object[] params = new Object[whereSize + seekSize + limitSize];
+		int n = 0;
+		for (int i = 0; i < whereSize; i++) {
+			params[n++] = whereParams.get(i);
+		}
+		if (seekAfter != null) {
+			// (c1 > ?) OR (c1 = ? AND c2 > ?) OR ..., null is not a parameter:
+			for (int i = 0; i < seekAfter.length; i++) {
+				for (int j = 0; j <= i; j++) {
+					if (seekAfter[j] != null) {
+						params[n++] = seekAfter[j];
+					}
+				}
+			}
+		}
+		if (limitSize == 2) {
+			params[n++] = offset;
+		}
+		if (limitSize > 0) {
+			params[n++] = maxResults;
+		}
+		return params;
+	}
+
+	// build "(c1 > ?) OR (c1 = ? AND c2 > ?) OR ..." for order by columns. HSQLDB
+	// sorts NULLs first in both directions, so the rows after a null value are
+	// "IS NOT NULL" and a null value is matched by "IS NULL":
+	String seekClause() {
+		List<String> orders = orderByList();
+		if (orders == null || orders.size() != seekAfter.length) {
+			throw new IllegalArgumentException("Keyset values must match order by columns.");
+		}
+		StringBuilder sb = new StringBuilder(64);
+		sb.append("(");
+		for (int i = 0; i < orders.size(); i++) {
+			if (i > 0) {
+				sb.append(" OR ");
+			}
+			sb.append("(");
+			for (int j = 0; j < i; j++) {
+				sb.append(column(orders.get(j))).append(seekAfter[j] == null ? " IS NULL AND " : " = ? AND ");
+			}
+			if (seekAfter[i] == null) {
+				sb.append(column(orders.get(i))).append(" IS NOT NULL");
+			} else {
+				sb.append(column(orders.get(i))).append(isDesc(orders.get(i)) ? " < ?" : " > ?");
+			}
+			sb.append(")");
+		}
+		sb.append(")");
+		return sb.toString();
+	}
+
+	// keyset pagination requires a unique order, so id is appended to order by
+	// when building SQL, not here, so a following desc() applies to the user's
+	// column:
+	void useKeyset() {
+		if (orderBy == null) {
+			throw new IllegalStateException("Keyset pagination requires order by.");
+		}
+		keyset = true;
+	}
+
+	// order by list with id appended in the direction of the last order by
+	// column if keyset pagination is used and not ordered by id:
+	List<String> orderByList() {
+		if (!keyset) {
+			return orderBy;
+		}
+		for (String order : orderBy) {
+			if (column(order).equalsIgnoreCase(mapper.id.columnName)) {
+				return orderBy;
+			}
+		}
+		List<String> orders = new ArrayList<>(orderBy.size() + 1);
+		orders.addAll(orderBy);
+		orders.add(isDesc(orderBy.get(orderBy.size() - 1)) ? mapper.id.columnName + " DESC" : mapper.id.columnName);
+		return orders;
+	}
+
+	AccessibleProperty[] orderByProperties() {
+		List<String> orders = orderByList();
+		if (orders == null) {
+			throw new IllegalStateException("Keyset pagination requires order by.");
+		}
+		AccessibleProperty[] props = new AccessibleProperty[orders.size()];
+		for (int i = 0; i < props.length; i++) {
+			String column = column(orders.get(i));
+			for (AccessibleProperty prop : mapper.allProperties) {
+				if (prop.columnName.equalsIgnoreCase(column)) {
+					props[i] = prop;
+				}
+			}
 		}
-		return params.toArray();
+		return props;
+	}
+
+	private static String column(String order) {
+		int n = order.indexOf(' ');
+		return n == (-1) ? order : order.substring(0, n);
+	}
+
+	private static boolean isDesc(String order) {
+		return order.toUpperCase().endsWith(" DESC");
 	}
 
 	List<T> list() {
 		String selectSql = sql();
 		Object[] selectParams = params();
-		return db.jdbcTemplate.query(selectSql, selectParams, mapper.rowMapper);
+		return query(selectSql, selectParams);
 	}
 
 	T first() {
@@ -78,7 +234,7 @@ final class Criteria<T> {
 		this.maxResults = 1;
 		String selectSql = sql();
 		Object[] selectParams = params();
-		List<T> list = db.jdbcTemplate.query(selectSql, selectParams, mapper.rowMapper);
+		List<T> list = query(selectSql, selectParams);
 		if (list.isEmpty()) {
 			return null;
 		}
@@ -90,7 +246,7 @@ final class Criteria<T> {
 		this.maxResults = 2;
 		String selectSql = sql();
 		Object[] selectParams = params();
-		List<T> list = db.jdbcTemplate.query(selectSql, selectParams, mapper.rowMapper);
+		List<T> list = query(selectSql, selectParams);
 		if (list.isEmpty()) {
 			throw new NoResultException("Expected unique row but nothing found.");
 		}
@@ -99,4 +255,178 @@ final class Criteria<T> {
 		}
 		return list.get(0);
 	}
+
+	private List<T> query(String selectSql, Object[] selectParams) {
+		if (cached) {
+			return db.executeCachedQuery(mapper, selectSql, selectParams);
+		}
+		return db.executeQuery(selectSql, selectParams, mapper.rowMapper);
+	}
+
+	// run on executor of DbTemplate, outside the caller's transaction:
+	CompletableFuture<List<T>> listAsync() {
+		return db.executeAsync(this::list);
+	}
+
+	CompletableFuture<T> firstAsync() {
+		return db.executeAsync(this::first);
+	}
+
+	long count() {
+		Long n = aggregate("COUNT(*)", false, (rs) -> rs.next() ? rs.getLong(1) : 0L);
+		return n.longValue();
+	}
+
+	boolean exists() {
+		Boolean b = aggregate("1", true, (rs) -> rs.next());
+		return b.booleanValue();
+	}
+
+	@SuppressWarnings("unchecked")
+	<V> V min(String property) {
+		AccessibleProperty prop = aggregateProperty(property);
+		return (V) aggregate("MIN(" + prop.columnName + ")", false, (rs) -> rs.next()
+				? JdbcUtils.getResultSetValue(rs, 1, ClassUtils.resolvePrimitiveIfNecessary(prop.propertyType))
+				: null);
+	}
+
+	@SuppressWarnings("unchecked")
+	<V> V max(String property) {
+		AccessibleProperty prop = aggregateProperty(property);
+		return (V) aggregate("MAX(" + prop.columnName + ")", false, (rs) -> rs.next()
+				? JdbcUtils.getResultSetValue(rs, 1, ClassUtils.resolvePrimitiveIfNecessary(prop.propertyType))
+				: null);
+	}
+
+	Number sum(String property) {
+		AccessibleProperty prop = aggregateProperty(property);
+		return aggregate("SUM(" + prop.columnName + ")", false, (rs) -> rs.next() ? (Number) rs.getObject(1) : null);
+	}
+
+	private AccessibleProperty aggregateProperty(String property) {
+		AccessibleProperty prop = mapper.allPropertiesMap.get(property.toLowerCase());
+		if (prop == null) {
+			throw new IllegalArgumentException("Invalid property when use aggregate: " + property);
+		}
+		return prop;
+	}
+
+	// select expression from table with where clause only:
+	private <R> R aggregate(String expr, boolean limitOne, ResultSetExtractor<R> rse) {
+		StringBuilder sb = new StringBuilder(64);
+		sb.append("SELECT ").append(expr).append(" FROM ").append(mapper.tableName);
+		if (where != null) {
+			sb.append(" WHERE ").append(where);
+		}
+		if (limitOne) {
+			sb.append(" LIMIT 1");
+		}
+		Object[] aggregateParams = where == null ? new Object[0] : whereParams.toArray();
+		return db.executeQuery(sb.toString(), aggregateParams, rse);
+	}
+
+	Page<T> page() {
+		useKeyset();
+		AccessibleProperty[] props = orderByProperties();
+		List<T> list = list();
+		String nextCursor = null;
+		if (maxResults > 0 && list.size() == maxResults) {
+			T last = list.get(list.size() - 1);
+			Object[] values = new Object[props.length];
+			for (int i = 0; i < props.length; i++) {
+				values[i] = props[i].get(last);
+			}
+			nextCursor = KeysetCursor.encode(values);
+		}
+		return new Page<>(list, nextCursor);
+	}
+
+	Stream<T> stream() {
+		String selectSql = sql();
+		Object[] selectParams = params();
+		return new ResultCursor<>(db, selectSql, selectParams, mapper.rowMapper, db.fetchSize).stream();
+	}
+
+	Publisher<T> publisher() {
+		return new QueryPublisher<>(db, sql(), params(), mapper.rowMapper);
+	}
+
+	void forEach(Consumer<? super T> action) {
+		try (Stream<T> s = stream()) {
+			s.forEach(action);
+		}
+	}
+
+	/**
+	 * Key of generated SQL: everything sql() depends on, but no parameter.
+	 */
+	static final class Shape {
+
+		final String table;
+		final List<String> select;
+		final String where;
+		final List<String> orderBy;
+		final int seek;
+		final int limit;
+		final int hash;
+
+		Shape(Criteria<?> c) {
+			this(c.mapper.tableName, c.select, c.where, c.orderByList(), seekShape(c.seekAfter),
+					c.maxResults > 0 && c.offset >= 0 ? 1 : 0);
+		}
+
+		private Shape(String table, List<String> select, String where, List<String> orderBy, int seek, int limit) {
+			this.table = table;
+			this.select = select;
+			this.where = where;
+			this.orderBy = orderBy;
+			this.seek = seek;
+			this.limit = limit;
+			int h = table.hashCode();
+			h = 31 * h + Objects.hashCode(select);
+			h = 31 * h + Objects.hashCode(where);
+			h = 31 * h + Objects.hashCode(orderBy);
+			h = 31 * h + seek;
+			this.hash = 31 * h + limit;
+		}
+
+		// number of keyset values and which of them are null, or -1:
+		static int seekShape(Object[] seekAfter) {
+			if (seekAfter == null) {
+				return -1;
+			}
+			int shape = seekAfter.length;
+			for (int i = 0; i < seekAfter.length; i++) {
+				if (seekAfter[i] == null) {
+					shape |= 1 << (8 + i);
+				}
+			}
+			return shape;
+		}
+
+		// copy mutable lists before used as cache key:
+		Shape copy() {
+			return new Shape(table, select == null ? null : new ArrayList<>(select), where,
+					orderBy == null ? null : new ArrayList<>(orderBy), seek, limit);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Shape)) {
+				return false;
+			}
+			Shape other = (Shape) o;
+			return hash == other.hash && seek == other.seek && limit == other.limit && table.equals(other.table)
+					&& Objects.equals(where, other.where) && Objects.equals(select, other.select)
+					&& Objects.equals(orderBy, other.orderBy);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
 }
@@ -1,28 +1,64 @@
 package com.jacky.orm;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 
 import javax.persistence.Entity;
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import com.zaxxer.hikari.HikariDataSource;
 
 /**
  * A simple ORM wrapper for JdbcTemplate.
@@ -36,22 +72,159 @@ public class DbTemplate {
 	final JdbcTemplate jdbcTemplate;
 
 	// class -> Mapper:
-	private Map<Class<?>, Mapper<?>> classMapping;
+	final Map<Class<?>, Mapper<?>> classMapping = new ConcurrentHashMap<>();
+
+	// class -> build Mapper, for all entities found:
+	private final Map<Class<?>, Callable<Mapper<?>>> mapperBuilders = new HashMap<>();
+
+	// package of entities:
+	private final String basePackage;
+
+	// max statements per JDBC batch:
+	private int batchSize = 100;
+
+	// JDBC fetch size of streaming query:
+	int fetchSize = 100;
+
+	// query shape -> generated SQL:
+	final SqlCache sqlCache = new SqlCache(1024);
+
+	final StatementCache statementCache = new StatementCache(64);
+
+	// per-statement counters and latency histogram:
+	final SqlTelemetry telemetry = new SqlTelemetry();
+
+	// second-level cache of @Cacheable entities:
+	private final Map<Mapper<?>, EntityCache> entityCaches = new ConcurrentHashMap<>();
+	private int entityCacheSize = 10000;
+	private long entityCacheTtl = 300;
+
+	// run chunks of getAll() in parallel if set:
+	private volatile Executor executor = null;
+
+	// default executor of async queries, created when first used:
+	private volatile Executor asyncExecutor = null;
+
+	// max queued async queries per thread of default executor:
+	private static final int ASYNC_QUEUE_PER_THREAD = 100;
+
+	// set while a task runs on the executor, so nested parallel work runs inline
+	// instead of waiting for threads of the same executor:
+	private static final ThreadLocal<Boolean> ON_EXECUTOR = new ThreadLocal<>();
+
+	// results of cached() criteria queries:
+	private volatile QueryCache queryCache = new QueryCache(1000, 1000);
 
 	public DbTemplate(JdbcTemplate jdbcTemplate, String basePackage) {
+		this(jdbcTemplate, basePackage, MapperInit.EAGER);
+	}
+
+	/**
+	 * Create DbTemplate which builds mappers of entities by given mode.
+	 * 
+	 * @param jdbcTemplate The JdbcTemplate.
+	 * @param basePackage  Package of entities.
+	 * @param mapperInit   When and how to build mappers.
+	 */
+	public DbTemplate(JdbcTemplate jdbcTemplate, String basePackage, MapperInit mapperInit) {
 		this.jdbcTemplate = jdbcTemplate;
-		List<Class<?>> classes = scanEntities(basePackage);
-		Map<Class<?>, Mapper<?>> classMapping = new HashMap<>();
+		this.basePackage = basePackage;
 		try {
-			for (Class<?> clazz : classes) {
-				logger.info("Found class: " + clazz.getName());
-				Mapper<?> mapper = new Mapper<>(clazz);
-				classMapping.put(clazz, mapper);
+			// use entity index generated at compile time if exists:
+			ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+			List<EntityIndex.Entry> entries = EntityIndex.load(classLoader, basePackage);
+			if (entries != null) {
+				for (EntityIndex.Entry entry : entries) {
+					Class<?> clazz = ClassUtils.forName(entry.className, classLoader);
+					logger.info("Found indexed class: " + clazz.getName());
+					this.mapperBuilders.put(clazz, () -> entry.toMapper(clazz));
+				}
+			} else {
+				for (Class<?> clazz : scanEntities(basePackage)) {
+					logger.info("Found class: " + clazz.getName());
+					this.mapperBuilders.put(clazz, () -> new Mapper<>(clazz));
+				}
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			throw new PersistenceException("Cannot load entities of package " + basePackage, e);
+		}
+		switch (mapperInit) {
+		case EAGER:
+			for (Class<?> clazz : this.mapperBuilders.keySet()) {
+				this.classMapping.put(clazz, buildMapper(clazz));
 			}
+			break;
+		case PARALLEL:
+			buildMappersInParallel();
+			break;
+		case LAZY:
+			break;
+		}
+	}
+
+	/**
+	 * When and how mappers of entities are built.
+	 */
+	public enum MapperInit {
+
+		/**
+		 * Build all mappers one by one in constructor.
+		 */
+		EAGER,
+
+		/**
+		 * Build all mappers in parallel in constructor.
+		 */
+		PARALLEL,
+
+		/**
+		 * Build mapper when the entity is first used.
+		 */
+		LAZY;
+	}
+
+	private void buildMappersInParallel() {
+		List<CompletableFuture<Void>> futures = new ArrayList<>(this.mapperBuilders.size());
+		for (Class<?> clazz : this.mapperBuilders.keySet()) {
+			futures.add(CompletableFuture.runAsync(() -> this.classMapping.put(clazz, buildMapper(clazz))));
+		}
+		PersistenceException error = null;
+		for (CompletableFuture<Void> future : futures) {
+			try {
+				future.join();
+			} catch (CompletionException e) {
+				PersistenceException pe = e.getCause() instanceof PersistenceException
+						? (PersistenceException) e.getCause()
+						: new PersistenceException(e.getCause());
+				if (error == null) {
+					error = pe;
+				} else {
+					error.addSuppressed(pe);
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	private Mapper<?> buildMapper(Class<?> clazz) {
+		return buildMapper(clazz, this.mapperBuilders.get(clazz));
+	}
+
+	private Mapper<?> buildMapper(Class<?> clazz, Callable<Mapper<?>> builder) {
+		long start = System.nanoTime();
+		Mapper<?> mapper;
+		try {
+			mapper = builder.call();
+		} catch (PersistenceException e) {
+			throw e;
 		} catch (Exception e) {
-			throw new RuntimeException(e);
+			throw new PersistenceException("Cannot build mapper of entity " + clazz.getName(), e);
 		}
-		this.classMapping = classMapping;
+		logger.info(String.format("Built mapper of %s in %.3f ms.", clazz.getName(),
+				(System.nanoTime() - start) / 1_000_000.0));
+		return mapper;
 	}
 
 	/**
@@ -81,12 +254,448 @@ public class DbTemplate {
 	 */
 	public <T> T fetch(Class<T> clazz, Object id) {
 		Mapper<T> mapper = getMapper(clazz);
-		logger.info("SQL: " + mapper.selectSQL);
-		List<T> list = (List<T>) jdbcTemplate.query(mapper.selectSQL, new Object[] { id }, mapper.rowMapper);
+		id = mapper.normalizeId(id);
+		Session session = Session.current(this);
+		if (session != null) {
+			T t = session.get(mapper, id);
+			if (t != null) {
+				return t;
+			}
+		}
+		// second-level cache is bypassed once this transaction wrote the entity:
+		EntityCache cache = entityCache(mapper);
+		if (cache != null && session != null && session.isWritten(mapper)) {
+			cache = null;
+		}
+		long version = 0;
+		if (cache != null) {
+			Object[] values = cache.get(id);
+			if (values != null) {
+				T t = mapper.restore(values);
+				if (session != null) {
+					session.put(mapper, id, t);
+				}
+				return t;
+			}
+			version = cache.version();
+		}
+		List<T> list = executeQuery(mapper.selectSQL, new Object[] { id }, mapper.rowMapper);
 		if (list.isEmpty()) {
 			return null;
 		}
-		return list.get(0);
+		T t = list.get(0);
+		if (session != null) {
+			session.put(mapper, id, t);
+		}
+		if (cache != null) {
+			cache.put(id, mapper.snapshot(t), version);
+		}
+		return t;
+	}
+
+	/**
+	 * Get model instances by class type and ids. EntityNotFoundException is
+	 * thrown if any id is not found.
+	 * 
+	 * @param <T>   Generic type.
+	 * @param clazz Entity class.
+	 * @param ids   Id values.
+	 * @return Entity beans in the order of ids.
+	 */
+	public <T> List<T> getAll(Class<T> clazz, Collection<?> ids) {
+		Mapper<T> mapper = getMapper(clazz);
+		Map<Object, T> map = getAllMap(clazz, ids);
+		List<T> list = new ArrayList<>(ids.size());
+		for (Object id : ids) {
+			T t = map.get(mapper.normalizeId(id));
+			if (t == null) {
+				throw new EntityNotFoundException(clazz.getSimpleName());
+			}
+			list.add(t);
+		}
+		return list;
+	}
+
+	/**
+	 * Get model instances by class type and ids. Ids not found are not included.
+	 * 
+	 * Entities in current transaction or second-level cache are used directly,
+	 * others are loaded by "SELECT ... WHERE id IN (...)" in chunks of fixed
+	 * sizes. Chunks are loaded in parallel if an executor is set and no
+	 * transaction is active.
+	 * 
+	 * @param <T>   Generic type.
+	 * @param clazz Entity class.
+	 * @param ids   Id values.
+	 * @return Map of id and entity bean, in the order of ids.
+	 */
+	public <T> Map<Object, T> getAllMap(Class<T> clazz, Collection<?> ids) {
+		Mapper<T> mapper = getMapper(clazz);
+		Session session = Session.current(this);
+		EntityCache cache = entityCache(mapper);
+		if (cache != null && session != null && session.isWritten(mapper)) {
+			cache = null;
+		}
+		// null value is a placeholder of id to be loaded:
+		Map<Object, T> map = new LinkedHashMap<>(ids.size() * 4 / 3 + 1);
+		List<Object> missing = new ArrayList<>();
+		for (Object rawId : ids) {
+			Object id = mapper.normalizeId(rawId);
+			if (map.containsKey(id)) {
+				continue;
+			}
+			T t = session == null ? null : session.get(mapper, id);
+			if (t == null && cache != null) {
+				Object[] values = cache.get(id);
+				if (values != null) {
+					t = mapper.restore(values);
+					if (session != null) {
+						session.put(mapper, id, t);
+					}
+				}
+			}
+			map.put(id, t);
+			if (t == null) {
+				missing.add(id);
+			}
+		}
+		if (!missing.isEmpty()) {
+			long version = cache == null ? 0 : cache.version();
+			for (T t : selectByIds(mapper, missing)) {
+				Object id = mapper.getIdValue(t);
+				map.put(id, t);
+				if (session != null) {
+					session.put(mapper, id, t);
+				}
+				if (cache != null) {
+					cache.put(id, mapper.snapshot(t), version);
+				}
+			}
+			map.values().removeIf(Objects::isNull);
+		}
+		return map;
+	}
+
+	/**
+	 * Create a loader which collects lookups by id and loads them by getAllMap().
+	 * Futures of ids not found complete with null.
+	 * 
+	 * @param <T>   Generic type.
+	 * @param clazz Entity class.
+	 * @return BatchLoader object.
+	 */
+	public <T> BatchLoader<Object, T> batchLoader(Class<T> clazz) {
+		Mapper<T> mapper = getMapper(clazz);
+		return new BatchLoader<>((ids) -> {
+			Map<Object, T> found = getAllMap(clazz, ids);
+			// key by id as passed to load():
+			Map<Object, T> map = new HashMap<>(ids.size() * 4 / 3 + 1);
+			for (Object id : ids) {
+				map.put(id, found.get(mapper.normalizeId(id)));
+			}
+			return map;
+		}, Mapper.IN_SIZES[Mapper.IN_SIZES.length - 1]);
+	}
+
+	private <T> List<T> selectByIds(Mapper<T> mapper, List<Object> ids) {
+		List<Object[]> chunks = Mapper.chunkIds(ids);
+		Executor executor = this.executor;
+		List<T> list = new ArrayList<>(ids.size());
+		if (executor == null || chunks.size() == 1 || TransactionSynchronizationManager.isSynchronizationActive()
+				|| ON_EXECUTOR.get() != null) {
+			for (Object[] args : chunks) {
+				String sql = mapper.selectInSQL(args.length);
+				list.addAll(executeQuery(sql, args, mapper.rowMapper));
+			}
+			return list;
+		}
+		// each chunk runs on its own pooled connection:
+		List<CompletableFuture<List<T>>> futures = new ArrayList<>(chunks.size());
+		for (Object[] args : chunks) {
+			String sql = mapper.selectInSQL(args.length);
+			futures.add(CompletableFuture.supplyAsync(onExecutor(() -> executeQuery(sql, args, mapper.rowMapper)),
+					executor));
+		}
+		for (CompletableFuture<List<T>> future : futures) {
+			try {
+				list.addAll(future.join());
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Run query asynchronously on the executor. The query runs outside the
+	 * caller's transaction. When the queue of the default executor is full, the
+	 * query runs on the caller's thread, or is rejected by
+	 * RejectedExecutionException if the caller is in a transaction.
+	 * 
+	 * @param <R>   Result type.
+	 * @param query The query, e.g. () -> db.from(User.class).list().
+	 * @return Future of result.
+	 */
+	public <R> CompletableFuture<R> executeAsync(Supplier<R> query) {
+		return CompletableFuture.supplyAsync(onExecutor(query), asyncExecutor());
+	}
+
+	/**
+	 * Run independent queries concurrently and gather results, so the latency is
+	 * the slowest query instead of the sum. The returned future fails if any
+	 * query fails.
+	 * 
+	 * @param <R>     Result type.
+	 * @param queries The queries.
+	 * @return Future of results in the order of queries.
+	 */
+	public <R> CompletableFuture<List<R>> executeAll(List<? extends Supplier<? extends R>> queries) {
+		List<CompletableFuture<? extends R>> futures = new ArrayList<>(queries.size());
+		for (Supplier<? extends R> query : queries) {
+			futures.add(executeAsync(query));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply((v) -> {
+			List<R> results = new ArrayList<>(futures.size());
+			for (CompletableFuture<? extends R> future : futures) {
+				results.add(future.join());
+			}
+			return results;
+		});
+	}
+
+	/**
+	 * Scan all rows of entity by id-range partitions concurrently and collect
+	 * results.
+	 * 
+	 * @see #scan(Class, String, Object[], int, Collector)
+	 */
+	public <T, A, R> R scan(Class<T> clazz, int partitions, Collector<? super T, A, R> collector) {
+		return scan(clazz, null, null, partitions, collector);
+	}
+
+	/**
+	 * Scan rows matching where clause by id-range partitions and collect
+	 * results.
+	 * 
+	 * The range [min(id), max(id)] is split into partitions of equal width, each
+	 * partition is read by a cursor ordered by id and accumulated into its own
+	 * container, then containers are combined in the order of partitions, so
+	 * an ordered collector like toList() keeps id order. Partitions run
+	 * concurrently on the executor when no transaction is active, otherwise one
+	 * by one on the transactional connection. Partitions also run one by one when
+	 * scan() is called by a task on the executor, e.g. from executeAsync(), which
+	 * would otherwise wait for threads of its own executor. Id must be a number.
+	 * 
+	 * @param <T>        Generic type.
+	 * @param <A>        Accumulation type of collector.
+	 * @param <R>        Result type.
+	 * @param clazz      Entity class.
+	 * @param where      Where clause like "name = ?", or null.
+	 * @param args       Arguments of where clause, or null.
+	 * @param partitions Number of partitions.
+	 * @param collector  Collector of entities.
+	 * @return Result of collector.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T, A, R> R scan(Class<T> clazz, String where, Object[] args, int partitions,
+			Collector<? super T, A, R> collector) {
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("partitions must be > 0.");
+		}
+		Mapper<T> mapper = getMapper(clazz);
+		if (!Number.class.isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(mapper.id.propertyType))) {
+			throw new IllegalArgumentException("Cannot scan entity with non-number id: " + clazz.getName());
+		}
+		Object[] whereArgs = args == null ? new Object[0] : args;
+		Number min = where == null ? from(clazz).min(mapper.id.propertyName)
+				: from(clazz).where(where, whereArgs).min(mapper.id.propertyName);
+		Number max = where == null ? from(clazz).max(mapper.id.propertyName)
+				: from(clazz).where(where, whereArgs).max(mapper.id.propertyName);
+		List<long[]> ranges = min == null ? Collections.emptyList()
+				: idRanges(min.longValue(), max.longValue(), partitions);
+		String clause = (where == null ? "" : "(" + where + ") AND ") + mapper.id.columnName + " >= ? AND "
+				+ mapper.id.columnName + " <= ?";
+		Function<long[], A> task = (range) -> {
+			Object[] params = Arrays.copyOf(whereArgs, whereArgs.length + 2);
+			params[whereArgs.length] = range[0];
+			params[whereArgs.length + 1] = range[1];
+			A container = collector.supplier().get();
+			BiConsumer<A, ? super T> accumulator = collector.accumulator();
+			from(clazz).where(clause, params).orderBy(mapper.id.propertyName)
+					.forEach((t) -> accumulator.accept(container, t));
+			return container;
+		};
+		A result;
+		if (ranges.size() <= 1 || TransactionSynchronizationManager.isSynchronizationActive()
+				|| ON_EXECUTOR.get() != null) {
+			result = collector.supplier().get();
+			for (long[] range : ranges) {
+				result = collector.combiner().apply(result, task.apply(range));
+			}
+		} else {
+			Executor exec = asyncExecutor();
+			List<CompletableFuture<A>> futures = new ArrayList<>(ranges.size());
+			for (long[] range : ranges) {
+				futures.add(CompletableFuture.supplyAsync(onExecutor(() -> task.apply(range)), exec));
+			}
+			result = collector.supplier().get();
+			try {
+				for (CompletableFuture<A> future : futures) {
+					result = collector.combiner().apply(result, future.join());
+				}
+			} catch (CompletionException e) {
+				for (CompletableFuture<A> future : futures) {
+					future.cancel(false);
+				}
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+		if (collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+			return (R) result;
+		}
+		return collector.finisher().apply(result);
+	}
+
+	// mark task as running on executor:
+	private static <R> Supplier<R> onExecutor(Supplier<R> task) {
+		return () -> {
+			boolean nested = ON_EXECUTOR.get() != null;
+			ON_EXECUTOR.set(Boolean.TRUE);
+			try {
+				return task.get();
+			} finally {
+				if (!nested) {
+					ON_EXECUTOR.remove();
+				}
+			}
+		};
+	}
+
+	// executor set by setExecutor(), or a bounded default sized by the pool:
+	Executor asyncExecutor() {
+		Executor exec = this.executor;
+		if (exec != null) {
+			return exec;
+		}
+		exec = this.asyncExecutor;
+		if (exec == null) {
+			synchronized (this) {
+				exec = this.asyncExecutor;
+				if (exec == null) {
+					int threads = Math.max(1, maxPoolSize() / 2);
+					Executor virtual = virtualThreadExecutor();
+					if (virtual != null) {
+						logger.info("Create virtual thread executor of async queries with " + threads
+								+ " concurrent queries.");
+						this.asyncExecutor = exec = boundedExecutor(virtual, threads,
+								threads * ASYNC_QUEUE_PER_THREAD);
+					} else {
+						logger.info("Create executor of async queries with " + threads + " threads.");
+						CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("db-async-");
+						threadFactory.setDaemon(true);
+						// run on caller's thread when queue is full, unless the query would join caller's
+						// transaction:
+						ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+								new ArrayBlockingQueue<>(threads * ASYNC_QUEUE_PER_THREAD), threadFactory,
+								(task, executor) -> {
+									if (executor.isShutdown()
+											|| TransactionSynchronizationManager.isSynchronizationActive()) {
+										throw new RejectedExecutionException("Too many async queries.");
+									}
+									task.run();
+								});
+						pool.allowCoreThreadTimeOut(true);
+						this.asyncExecutor = exec = pool;
+					}
+				}
+			}
+		}
+		return exec;
+	}
+
+	/**
+	 * Split [lo, hi] into at most partitions ranges of equal width. Width is
+	 * computed by unsigned math, so hi - lo does not overflow for extreme bounds
+	 * like [Long.MIN_VALUE, Long.MAX_VALUE].
+	 */
+	static List<long[]> idRanges(long lo, long hi, int partitions) {
+		List<long[]> ranges = new ArrayList<>(partitions);
+		// 0 if the range covers all 2^64 values and partitions is 1:
+		long width = Long.divideUnsigned(hi - lo, partitions) + 1;
+		long start = lo;
+		while (width != 0 && Long.compareUnsigned(hi - start, width) >= 0) {
+			ranges.add(new long[] { start, start + width - 1 });
+			start += width;
+		}
+		ranges.add(new long[] { start, hi });
+		return ranges;
+	}
+
+	/**
+	 * Wrap executor which starts a thread per task, e.g. of virtual threads, with
+	 * the same limits as the platform executor: at most maxRunning tasks run at
+	 * once, so waiting threads do not hold connections, and at most maxQueued
+	 * tasks wait. When full, the task runs on caller's thread, or is rejected if
+	 * the caller is in a transaction.
+	 */
+	static Executor boundedExecutor(Executor executor, int maxRunning, int maxQueued) {
+		Semaphore submitted = new Semaphore(maxRunning + maxQueued);
+		Semaphore running = new Semaphore(maxRunning);
+		return (task) -> {
+			if (!submitted.tryAcquire()) {
+				if (TransactionSynchronizationManager.isSynchronizationActive()) {
+					throw new RejectedExecutionException("Too many async queries.");
+				}
+				task.run();
+				return;
+			}
+			try {
+				executor.execute(() -> {
+					running.acquireUninterruptibly();
+					try {
+						task.run();
+					} finally {
+						running.release();
+						submitted.release();
+					}
+				});
+			} catch (RuntimeException e) {
+				submitted.release();
+				throw e;
+			}
+		};
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor() on Java 21+, or null:
+	private Executor virtualThreadExecutor() {
+		Method method = ClassUtils.getMethodIfAvailable(Executors.class, "newVirtualThreadPerTaskExecutor");
+		if (method != null) {
+			try {
+				return (Executor) method.invoke(null);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				logger.warn("Cannot create virtual thread executor, use platform threads.", e);
+			}
+		}
+		return null;
+	}
+
+	// max connections of pool, so async queries leave connections for callers:
+	private int maxPoolSize() {
+		DataSource ds = this.jdbcTemplate.getDataSource();
+		try {
+			if (ds != null && ds.isWrapperFor(HikariDataSource.class)) {
+				return ds.unwrap(HikariDataSource.class).getMaximumPoolSize();
+			}
+		} catch (SQLException e) {
+			logger.warn("Cannot get pool size of data source.", e);
+		}
+		return 10;
 	}
 
 	/**
@@ -95,12 +704,8 @@ public class DbTemplate {
 	 * @param bean The entity.
 	 */
 	public <T> void delete(T bean) {
-		try {
-			Mapper<?> mapper = getMapper(bean.getClass());
-			delete(bean.getClass(), mapper.getIdValue(bean));
-		} catch (ReflectiveOperationException e) {
-			throw new PersistenceException(e);
-		}
+		Mapper<?> mapper = getMapper(bean.getClass());
+		delete(bean.getClass(), mapper.getIdValue(bean));
 	}
 
 	/**
@@ -110,8 +715,9 @@ public class DbTemplate {
 	 */
 	public <T> void delete(Class<T> clazz, Object id) {
 		Mapper<?> mapper = getMapper(clazz);
-		logger.info("SQL: " + mapper.deleteSQL);
-		jdbcTemplate.update(mapper.deleteSQL, id);
+		id = mapper.normalizeId(id);
+		executeUpdate(mapper.deleteSQL, new Object[] { id });
+		written(mapper, id, null);
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -125,70 +731,776 @@ public class DbTemplate {
 	}
 
 	/**
-	 * Update entity's updatable properties by id.
+	 * Update entity's updatable properties by id. If the bean was loaded or
+	 * written in current transaction, only changed properties are updated, and
+	 * no statement is executed if nothing changed.
+	 * 
+	 * If entity has a &#64;Version property, the row is only updated if its
+	 * version equals the bean's, and the version is increased by 1.
 	 * 
 	 * @param <T>  Generic type.
 	 * @param bean Entity object.
+	 * @throws javax.persistence.OptimisticLockException If version of the row
+	 *                                                   does not match.
 	 */
 	public <T> void update(T bean) {
-		try {
-			Mapper<?> mapper = getMapper(bean.getClass());
-			Object[] args = new Object[mapper.updatableProperties.size() + 1];
+		Mapper<?> mapper = getMapper(bean.getClass());
+		Object id = mapper.id.get(bean);
+		Session session = Session.current(this);
+		Object[] snapshot = session == null ? null : session.snapshot(bean);
+		int rows;
+		if (snapshot != null && mapper.updatableProperties.size() <= 64) {
+			// dirty checking:
+			Object[] values = mapper.updatableValues(bean);
+			long mask = 0;
+			int changed = 0;
+			for (int i = 0; i < values.length; i++) {
+				if (!Objects.deepEquals(values[i], snapshot[i])) {
+					mask |= 1L << i;
+					changed++;
+				}
+			}
+			if (changed == 0) {
+				return;
+			}
+			int size = mapper.version == null ? changed + 1 : changed + 2;
+			Object[] args = new Object[size];
+			AccessibleProperty[] props = new AccessibleProperty[size];
 			int n = 0;
-			for (AccessibleProperty prop : mapper.updatableProperties) {
-				args[n] = prop.getter.invoke(bean);
-				n++;
+			for (int i = 0; i < values.length; i++) {
+				if ((mask & (1L << i)) != 0) {
+					args[n] = values[i];
+					props[n] = mapper.updatableProperties.get(i);
+					n++;
+				}
+			}
+			args[n] = id;
+			props[n] = mapper.id;
+			if (mapper.version != null) {
+				args[n + 1] = mapper.version.get(bean);
+				props[n + 1] = mapper.version;
 			}
-			args[n] = mapper.id.getter.invoke(bean);
-			logger.info("SQL: " + mapper.updateSQL);
-			jdbcTemplate.update(mapper.updateSQL, args);
-		} catch (ReflectiveOperationException e) {
-			throw new PersistenceException(e);
+			rows = executeUpdate(mapper.updateSQL(mask), args, (ps) -> {
+				for (int i = 0; i < args.length; i++) {
+					props[i].bindValue(ps, i + 1, args[i]);
+				}
+			});
+		} else {
+			rows = executeUpdate(mapper.updateSQL, null, (ps) -> mapper.bindUpdate(ps, bean));
 		}
+		if (mapper.version != null) {
+			if (rows == 0) {
+				throw optimisticLockFailed(mapper, id, bean);
+			}
+			mapper.increaseVersion(bean);
+		}
+		written(mapper, id, bean);
 	}
 
 	public <T> void insert(T bean) {
-		try {
-			int rows;
-			final Mapper<?> mapper = getMapper(bean.getClass());
-			Object[] args = new Object[mapper.insertableProperties.size()];
-			int n = 0;
-			for (AccessibleProperty prop : mapper.insertableProperties) {
-				args[n] = prop.getter.invoke(bean);
-				n++;
-			}
-			logger.info("SQL: " + mapper.insertSQL);
-			if (mapper.id.isIdentityId()) {
-				// using identityId:
-				KeyHolder keyHolder = new GeneratedKeyHolder();
+		int rows;
+		final Mapper<?> mapper = getMapper(bean.getClass());
+		mapper.initVersion(bean);
+		if (mapper.id.isIdentityId()) {
+			// using identityId:
+			KeyHolder keyHolder = new GeneratedKeyHolder();
+			long start = System.nanoTime();
+			try {
 				rows = jdbcTemplate.update(new PreparedStatementCreator() {
 					public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
 						PreparedStatement ps = connection.prepareStatement(mapper.insertSQL,
 								Statement.RETURN_GENERATED_KEYS);
-						for (int i = 0; i < args.length; i++) {
-							ps.setObject(i + 1, args[i]);
-						}
+						mapper.bindInsert(ps, bean);
 						return ps;
 					}
 				}, keyHolder);
-				if (rows == 1) {
-					mapper.id.setter.invoke(bean, keyHolder.getKey());
+			} catch (RuntimeException e) {
+				this.telemetry.record(mapper.insertSQL, null, start, 0, true);
+				throw e;
+			}
+			this.telemetry.record(mapper.insertSQL, null, start, rows, false);
+			if (rows == 1) {
+				mapper.id.set(bean, keyHolder.getKey());
+			}
+		} else {
+			// id is specified:
+			rows = executeUpdate(mapper.insertSQL, null, (ps) -> mapper.bindInsert(ps, bean));
+		}
+		if (rows == 1) {
+			written(mapper, mapper.getIdValue(bean), bean);
+		}
+	}
+
+	/**
+	 * Insert beans by JDBC batch. Beans are grouped by entity class and each
+	 * group is executed as batches of insertSQL. Generated ids are set back to
+	 * beans if id is marked as @GeneratedValue(strategy=GenerationType.IDENTITY).
+	 * 
+	 * @param <T>   Generic type.
+	 * @param beans Entity objects.
+	 * @return Update counts in the order of beans.
+	 */
+	public <T> int[] insertAll(Collection<T> beans) {
+		List<T> list = new ArrayList<>(beans);
+		int[] results = new int[list.size()];
+		for (Map.Entry<Mapper<?>, List<Integer>> group : groupByMapper(list).entrySet()) {
+			Mapper<?> mapper = group.getKey();
+			List<Integer> indexes = group.getValue();
+			jdbcTemplate.execute((ConnectionCallback<Void>) (con) -> {
+				boolean identity = mapper.id.isIdentityId();
+				try (PreparedStatement ps = identity
+						? con.prepareStatement(mapper.insertSQL, Statement.RETURN_GENERATED_KEYS)
+						: con.prepareStatement(mapper.insertSQL)) {
+					for (int start = 0; start < indexes.size(); start += this.batchSize) {
+						int end = Math.min(start + this.batchSize, indexes.size());
+						List<Integer> batch = indexes.subList(start, end);
+						for (int index : batch) {
+							Object bean = list.get(index);
+							mapper.initVersion(bean);
+							mapper.bindInsert(ps, bean);
+							ps.addBatch();
+						}
+						int[] rows = executeBatch(ps, mapper.insertSQL);
+						for (int i = 0; i < rows.length; i++) {
+							results[batch.get(i)] = rows[i];
+						}
+						if (identity) {
+							try (ResultSet rs = ps.getGeneratedKeys()) {
+								for (int index : batch) {
+									if (!rs.next()) {
+										break;
+									}
+									Object id = JdbcUtils.getResultSetValue(rs, 1, mapper.id.propertyType);
+									mapper.id.set(list.get(index), id);
+								}
+							}
+						}
+					}
 				}
+				return null;
+			});
+		}
+		writtenAll(list, results);
+		return results;
+	}
+
+	/**
+	 * Insert bean, or update it if a row with the same key exists, by one MERGE
+	 * statement.
+	 * 
+	 * @see #upsertAll(Collection, String)
+	 */
+	public <T> UpsertResult upsert(T bean) {
+		return upsertAll(Collections.singletonList(bean));
+	}
+
+	/**
+	 * Upsert beans keyed by the first property marked as &#64;Column(unique =
+	 * true), or by &#64;Id if none.
+	 * 
+	 * @see #upsertAll(Collection, String)
+	 */
+	public <T> UpsertResult upsertAll(Collection<T> beans) {
+		return upsertAll(beans, null);
+	}
+
+	/**
+	 * Insert beans, or update updatable properties of rows with the same key, by
+	 * JDBC batches of "MERGE INTO ... USING (VALUES ...) ... ON key". Id of bean
+	 * is set after upsert.
+	 * 
+	 * The key cannot be a generated &#64;Id, because MERGE would insert a row
+	 * with a new id which the bean does not get.
+	 * 
+	 * Inserted and updated counts are approximate: they are counted by a SELECT
+	 * of existing keys before merge, which costs one more round trip per 256
+	 * keys, so rows written by other transactions concurrently may be counted
+	 * wrongly. Ids of inserted rows are read by another SELECT after merge. The
+	 * merge itself is atomic per row. &#64;Version of an existing row is
+	 * increased without checking.
+	 * 
+	 * @param <T>         Generic type.
+	 * @param beans       Entity objects.
+	 * @param keyProperty Property name of key, which must be &#64;Id or unique,
+	 *                    or null to use the default key.
+	 * @throws IllegalArgumentException If key is an &#64;Id generated by
+	 *                                  database.
+	 * @return UpsertResult with inserted and updated counts.
+	 */
+	public <T> UpsertResult upsertAll(Collection<T> beans, String keyProperty) {
+		List<T> list = new ArrayList<>(beans);
+		int inserted = 0;
+		int updated = 0;
+		for (Map.Entry<Mapper<?>, List<Integer>> group : groupByMapper(list).entrySet()) {
+			Mapper<?> mapper = group.getKey();
+			AccessibleProperty key;
+			if (keyProperty == null) {
+				key = mapper.defaultUpsertKey();
 			} else {
-				// id is specified:
-				rows = jdbcTemplate.update(mapper.insertSQL, args);
+				key = mapper.allPropertiesMap.get(keyProperty.toLowerCase());
+				if (key == null) {
+					throw new IllegalArgumentException("Invalid property when use upsert: " + keyProperty);
+				}
+			}
+			if (key.isIdentityId()) {
+				throw new IllegalArgumentException("Cannot upsert " + mapper.entityClass.getName()
+						+ " by generated id, use a unique property as key.");
+			}
+			List<Object> groupBeans = new ArrayList<>(group.getValue().size());
+			for (int index : group.getValue()) {
+				Object bean = list.get(index);
+				if (key.get(bean) == null) {
+					throw new IllegalArgumentException("Key of upsert is null: " + key.propertyName);
+				}
+				groupBeans.add(bean);
+			}
+			int[] counts = upsertGroup(mapper, key, groupBeans);
+			inserted += counts[0];
+			updated += counts[1];
+		}
+		return new UpsertResult(inserted, updated);
+	}
+
+	// upsert beans of same entity, return {inserted, updated}:
+	private int[] upsertGroup(Mapper<?> mapper, AccessibleProperty key, List<Object> beans) {
+		List<Object> keys = new ArrayList<>(beans.size());
+		for (Object bean : beans) {
+			keys.add(key.get(bean));
+		}
+		Map<Object, Object> existing = selectIdsByKeys(mapper, key, keys);
+		String sql = mapper.mergeSQL(key);
+		List<AccessibleProperty> props = mapper.mergeProperties(key);
+		jdbcTemplate.execute((ConnectionCallback<Void>) (con) -> {
+			try (PreparedStatement ps = con.prepareStatement(sql)) {
+				for (int start = 0; start < beans.size(); start += this.batchSize) {
+					int end = Math.min(start + this.batchSize, beans.size());
+					for (Object bean : beans.subList(start, end)) {
+						mapper.initVersion(bean);
+						for (int i = 0; i < props.size(); i++) {
+							props.get(i).bind(ps, i + 1, bean);
+						}
+						ps.addBatch();
+					}
+					executeBatch(ps, sql);
+				}
+			}
+			return null;
+		});
+		// keys seen before, including duplicated keys in beans, are updated:
+		Set<Object> seen = new HashSet<>(existing.keySet());
+		boolean[] isInsert = new boolean[beans.size()];
+		int inserted = 0;
+		for (int i = 0; i < beans.size(); i++) {
+			if (seen.add(keys.get(i))) {
+				isInsert[i] = true;
+				inserted++;
+			}
+		}
+		if (key != mapper.id) {
+			// set id of beans whose row is inserted:
+			List<Object> insertedKeys = new ArrayList<>(inserted);
+			for (int i = 0; i < beans.size(); i++) {
+				if (isInsert[i]) {
+					insertedKeys.add(keys.get(i));
+				}
+			}
+			existing.putAll(selectIdsByKeys(mapper, key, insertedKeys));
+			for (int i = 0; i < beans.size(); i++) {
+				mapper.id.set(beans.get(i), existing.get(keys.get(i)));
+			}
+		}
+		for (int i = 0; i < beans.size(); i++) {
+			Object bean = beans.get(i);
+			// an updated bean may not hold values of non-updatable columns, so it is
+			// not kept in session:
+			written(mapper, mapper.getIdValue(bean), isInsert[i] ? bean : null);
+		}
+		return new int[] { inserted, beans.size() - inserted };
+	}
+
+	// select key -> id of rows by "SELECT id, key ... WHERE key IN (...)":
+	private Map<Object, Object> selectIdsByKeys(Mapper<?> mapper, AccessibleProperty key, List<Object> keys) {
+		Map<Object, Object> map = new HashMap<>();
+		if (keys.isEmpty()) {
+			return map;
+		}
+		for (Object[] args : Mapper.chunkIds(keys)) {
+			String sql = "SELECT " + mapper.id.columnName + ", " + key.columnName + " FROM " + mapper.tableName
+					+ " WHERE " + key.columnName + " IN (" + String.join(", ", Collections.nCopies(args.length, "?"))
+					+ ")";
+			executeQuery(sql, args, (rs) -> {
+				while (rs.next()) {
+					map.put(JdbcUtils.getResultSetValue(rs, 2, key.propertyType),
+							JdbcUtils.getResultSetValue(rs, 1, mapper.id.propertyType));
+				}
+				return null;
+			});
+		}
+		return map;
+	}
+
+	/**
+	 * Update beans' updatable properties by JDBC batch of updateSQL.
+	 * 
+	 * Beans with &#64;Version are checked as update(). All batches are executed
+	 * and versions of updated beans are increased before the exception is
+	 * thrown, so the caller's transaction should be rolled back on conflict.
+	 * 
+	 * @param <T>   Generic type.
+	 * @param beans Entity objects.
+	 * @return Update counts in the order of beans.
+	 * @throws javax.persistence.OptimisticLockException If version of any row
+	 *                                                   does not match.
+	 */
+	public <T> int[] updateAll(Collection<T> beans) {
+		List<T> list = new ArrayList<>(beans);
+		int[] results = new int[list.size()];
+		for (Map.Entry<Mapper<?>, List<Integer>> group : groupByMapper(list).entrySet()) {
+			Mapper<?> mapper = group.getKey();
+			List<Integer> indexes = group.getValue();
+			jdbcTemplate.execute((ConnectionCallback<Void>) (con) -> {
+				try (PreparedStatement ps = con.prepareStatement(mapper.updateSQL)) {
+					for (int start = 0; start < indexes.size(); start += this.batchSize) {
+						int end = Math.min(start + this.batchSize, indexes.size());
+						List<Integer> batch = indexes.subList(start, end);
+						for (int index : batch) {
+							mapper.bindUpdate(ps, list.get(index));
+							ps.addBatch();
+						}
+						int[] rows = executeBatch(ps, mapper.updateSQL);
+						for (int i = 0; i < rows.length; i++) {
+							results[batch.get(i)] = rows[i];
+							if (mapper.version != null && rows[i] != 0) {
+								mapper.increaseVersion(list.get(batch.get(i)));
+							}
+						}
+					}
+				}
+				return null;
+			});
+		}
+		writtenAll(list, results);
+		for (int i = 0; i < results.length; i++) {
+			Mapper<?> mapper = getMapper(list.get(i).getClass());
+			if (mapper.version != null && results[i] == 0) {
+				throw optimisticLockFailed(mapper, mapper.getIdValue(list.get(i)), list.get(i));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Remove beans by ids. Ids are split into chunks of "DELETE ... WHERE id IN
+	 * (...)" and the last chunk is padded to a fixed size, so only a few distinct
+	 * statements are ever prepared.
+	 * 
+	 * @param <T>   Generic type.
+	 * @param clazz Entity class.
+	 * @param ids   Id values.
+	 * @return Number of rows deleted.
+	 */
+	public <T> int deleteAll(Class<T> clazz, Collection<?> ids) {
+		Mapper<T> mapper = getMapper(clazz);
+		int rows = 0;
+		for (Object[] args : Mapper.chunkIds(ids)) {
+			rows += executeUpdate(mapper.deleteInSQL(args.length), args);
+		}
+		for (Object id : ids) {
+			written(mapper, mapper.normalizeId(id), null);
+		}
+		return rows;
+	}
+
+	/**
+	 * Set max number of statements in one JDBC batch. Default to 100.
+	 * 
+	 * @param batchSize Batch size.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be > 0.");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set executor to load chunks of getAll() in parallel when no transaction is
+	 * active, and to run async queries. Default to null, which loads chunks one
+	 * by one and runs async queries on a default executor which runs at most
+	 * half as many queries as the connection pool at once, on virtual threads if
+	 * available. The executor should not have more threads than the connection
+	 * pool.
+	 * 
+	 * @param executor Executor or null.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set JDBC fetch size used by stream() and forEach() of query. Default to
+	 * 100.
+	 * 
+	 * @param fetchSize Fetch size.
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize <= 0) {
+			throw new IllegalArgumentException("fetchSize must be > 0.");
+		}
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Set max number of cached PreparedStatements per connection. Default to 64,
+	 * and 0 disables the cache.
+	 * 
+	 * @param size Max statements per connection.
+	 */
+	public void setStatementCacheSize(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("size must be >= 0.");
+		}
+		this.statementCache.maxSize = size;
+	}
+
+	/**
+	 * Configure second-level cache of entities marked as @Cacheable. Default to
+	 * 10000 entries per entity and 300 seconds time-to-live. Existing cached
+	 * entries are discarded.
+	 * 
+	 * @param maxSize    Max entries per entity.
+	 * @param ttlSeconds Time-to-live after loaded, 0 means never expire.
+	 */
+	public void setEntityCache(int maxSize, long ttlSeconds) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be > 0.");
+		}
+		if (ttlSeconds < 0) {
+			throw new IllegalArgumentException("ttlSeconds must be >= 0.");
+		}
+		this.entityCacheSize = maxSize;
+		this.entityCacheTtl = ttlSeconds;
+		this.entityCaches.clear();
+	}
+
+	/**
+	 * Get statistics of second-level cache of entity.
+	 * 
+	 * @param clazz Entity class.
+	 * @return CacheStats object, all zero if entity is not @Cacheable.
+	 */
+	public CacheStats getEntityCacheStats(Class<?> clazz) {
+		EntityCache cache = entityCache(getMapper(clazz));
+		return cache == null ? new CacheStats(0, 0, 0, 0) : cache.stats();
+	}
+
+	/**
+	 * Configure result cache of queries marked as cached(). Default to 1000
+	 * results and 1000 rows per result. Existing cached results are discarded.
+	 * 
+	 * @param maxEntries Max number of cached results.
+	 * @param maxRows    Results with more rows are not cached.
+	 */
+	public void setQueryCache(int maxEntries, int maxRows) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("maxEntries must be > 0.");
+		}
+		if (maxRows <= 0) {
+			throw new IllegalArgumentException("maxRows must be > 0.");
+		}
+		this.queryCache = new QueryCache(maxEntries, maxRows);
+	}
+
+	/**
+	 * Get statistics of query result cache. Results discarded because their
+	 * table was written are counted as evictions.
+	 * 
+	 * @return CacheStats object.
+	 */
+	public CacheStats getQueryCacheStats() {
+		return this.queryCache.stats();
+	}
+
+	/**
+	 * Get statistics of generated SQL cache of criteria queries.
+	 * 
+	 * @return CacheStats object.
+	 */
+	public CacheStats getSqlCacheStats() {
+		return this.sqlCache.stats();
+	}
+
+	/**
+	 * Get telemetry of each distinct SQL executed by this DbTemplate, sorted by
+	 * total time desc.
+	 * 
+	 * @return List of StatementStats.
+	 */
+	public List<StatementStats> getSqlStats() {
+		return this.telemetry.snapshot();
+	}
+
+	/**
+	 * Clear telemetry of all SQL.
+	 */
+	public void resetSqlStats() {
+		this.telemetry.reset();
+	}
+
+	/**
+	 * Log every n-th executed SQL at DEBUG level. Default to 0, which disables
+	 * SQL logging.
+	 * 
+	 * @param everyN Sample interval, 1 logs every SQL, 0 disables logging.
+	 */
+	public void setSqlLogSampling(int everyN) {
+		if (everyN < 0) {
+			throw new IllegalArgumentException("everyN must be >= 0.");
+		}
+		this.telemetry.sampleEvery = everyN;
+	}
+
+	/**
+	 * Record statements slower than threshold of the slow query log. Cursors of
+	 * stream(), forEach() and publisher() are not checked since their time
+	 * includes reading rows by the caller.
+	 * 
+	 * @param slowQueryLog The SlowQueryLog, or null to disable.
+	 */
+	public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+		this.telemetry.slowQueryLog = slowQueryLog;
+	}
+
+	/**
+	 * Get statistics of PreparedStatement cache.
+	 * 
+	 * @return CacheStats object.
+	 */
+	public CacheStats getStatementCacheStats() {
+		return this.statementCache.stats();
+	}
+
+	// cached statement is prepared on physical connection, so apply settings of
+	// JdbcTemplate and timeout of current transaction on each use as Spring's
+	// connection proxy does for a new statement:
+	private void applyStatementSettings(PreparedStatement ps) throws SQLException {
+		int fetchSize = jdbcTemplate.getFetchSize();
+		if (fetchSize != -1) {
+			ps.setFetchSize(fetchSize);
+		}
+		int maxRows = jdbcTemplate.getMaxRows();
+		if (maxRows != -1) {
+			ps.setMaxRows(maxRows);
+		}
+		// reset timeout set by previous use:
+		ps.setQueryTimeout(0);
+		DataSourceUtils.applyTimeout(ps, jdbcTemplate.getDataSource(), jdbcTemplate.getQueryTimeout());
+	}
+
+	// execute query by cached PreparedStatement:
+	<R> R executeQuery(String sql, Object[] args, ResultSetExtractor<R> rse) {
+		return jdbcTemplate.execute((ConnectionCallback<R>) (con) -> {
+			PreparedStatement ps = statementCache.prepare(con, sql);
+			boolean reusable = false;
+			try {
+				applyStatementSettings(ps);
+				for (int i = 0; i < args.length; i++) {
+					Binders.setValue(ps, i + 1, args[i]);
+				}
+				R result;
+				long start = System.nanoTime();
+				try (ResultSet rs = ps.executeQuery()) {
+					result = rse.extractData(rs);
+				} catch (SQLException | RuntimeException e) {
+					this.telemetry.record(sql, args, start, 0, true);
+					throw e;
+				}
+				this.telemetry.record(sql, args, start, result instanceof Collection ? ((Collection<?>) result).size()
+						: (result instanceof Map ? ((Map<?, ?>) result).size() : 1), false);
+				reusable = true;
+				return result;
+			} finally {
+				statementCache.release(con, sql, ps, reusable);
+			}
+		});
+	}
+
+	// execute query by query result cache:
+	<T> List<T> executeCachedQuery(Mapper<T> mapper, String sql, Object[] args) {
+		Session session = Session.current(this);
+		if (session != null && session.isWritten(mapper)) {
+			// results may contain uncommitted data:
+			return executeQuery(sql, args, mapper.rowMapper);
+		}
+		QueryCache cache = this.queryCache;
+		QueryCache.Key key = new QueryCache.Key(sql, args);
+		List<Object[]> rows = cache.get(key, mapper.tableName);
+		if (rows == null) {
+			// generation is read before the query, so rows read before a concurrent
+			// commit are not cached:
+			long generation = cache.generation(mapper.tableName);
+			List<T> list = executeQuery(sql, args, mapper.rowMapper);
+			rows = new ArrayList<>(list.size());
+			for (T t : list) {
+				rows.add(mapper.snapshot(t));
+			}
+			cache.put(key, mapper.tableName, rows, generation);
+			return list;
+		}
+		// cached rows are copied to new beans, so they are not shared with caller:
+		List<T> list = new ArrayList<>(rows.size());
+		for (Object[] values : rows) {
+			list.add(mapper.restore(values));
+		}
+		return list;
+	}
+
+	// execute update by cached PreparedStatement:
+	int executeUpdate(String sql, Object[] args) {
+		return executeUpdate(sql, args, null);
+	}
+
+	// execute update by cached PreparedStatement, parameters are set by setter if
+	// not null, otherwise by args which are also recorded by telemetry:
+	int executeUpdate(String sql, Object[] args, PreparedStatementSetter setter) {
+		return jdbcTemplate.execute((ConnectionCallback<Integer>) (con) -> {
+			PreparedStatement ps = statementCache.prepare(con, sql);
+			boolean reusable = false;
+			try {
+				applyStatementSettings(ps);
+				if (setter != null) {
+					setter.setValues(ps);
+				} else {
+					for (int i = 0; i < args.length; i++) {
+						Binders.setValue(ps, i + 1, args[i]);
+					}
+				}
+				long start = System.nanoTime();
+				int rows;
+				try {
+					rows = ps.executeUpdate();
+				} catch (SQLException | RuntimeException e) {
+					this.telemetry.record(sql, args, start, 0, true);
+					throw e;
+				}
+				this.telemetry.record(sql, args, start, rows, false);
+				reusable = true;
+				return rows;
+			} finally {
+				statementCache.release(con, sql, ps, reusable);
+			}
+		});
+	}
+
+	// execute batch and record telemetry, rows of SUCCESS_NO_INFO count as 1:
+	private int[] executeBatch(PreparedStatement ps, String sql) throws SQLException {
+		long start = System.nanoTime();
+		int[] counts;
+		try {
+			counts = ps.executeBatch();
+		} catch (SQLException | RuntimeException e) {
+			this.telemetry.record(sql, null, start, 0, true);
+			throw e;
+		}
+		long rows = 0;
+		for (int count : counts) {
+			rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, count);
+		}
+		this.telemetry.record(sql, null, start, rows, false);
+		return counts;
+	}
+
+	private void writtenAll(List<?> beans, int[] results) {
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] != 0) {
+				Object bean = beans.get(i);
+				Mapper<?> mapper = getMapper(bean.getClass());
+				written(mapper, mapper.getIdValue(bean), bean);
 			}
-		} catch (ReflectiveOperationException e) {
-			throw new PersistenceException(e);
 		}
 	}
 
+	/**
+	 * Keep caches consistent after an entity is written: the bean is put into
+	 * session (or removed if bean is null), the second-level cache entry and
+	 * cached query results of the table are evicted after the transaction
+	 * committed.
+	 */
+	private void written(Mapper<?> mapper, Object id, Object bean) {
+		Session session = Session.current(this);
+		EntityCache cache = entityCache(mapper);
+		if (session == null) {
+			if (cache != null) {
+				cache.evict(id);
+			}
+			this.queryCache.invalidate(mapper.tableName);
+			return;
+		}
+		if (session.markWritten(mapper)) {
+			session.afterCommit(() -> this.queryCache.invalidate(mapper.tableName));
+		}
+		if (bean == null) {
+			session.remove(mapper, id);
+		} else {
+			session.put(mapper, id, bean);
+		}
+		if (cache != null) {
+			session.afterCommit(() -> cache.evict(id));
+		}
+	}
+
+	// row of versioned bean was updated or deleted by another transaction, so
+	// cached copies are stale:
+	private OptimisticLockException optimisticLockFailed(Mapper<?> mapper, Object id, Object bean) {
+		Session session = Session.current(this);
+		if (session != null) {
+			session.remove(mapper, id);
+		}
+		EntityCache cache = entityCache(mapper);
+		if (cache != null) {
+			cache.evict(id);
+		}
+		return new OptimisticLockException("Row of " + mapper.entityClass.getSimpleName() + " with id " + id
+				+ " was updated or deleted by another transaction.", null, bean);
+	}
+
+	// get second-level cache of entity, or null if entity is not @Cacheable:
+	private EntityCache entityCache(Mapper<?> mapper) {
+		if (!mapper.cacheable) {
+			return null;
+		}
+		return this.entityCaches.computeIfAbsent(mapper,
+				(key) -> new EntityCache(this.entityCacheSize, this.entityCacheTtl * 1000L));
+	}
+
+	// group beans by mapper, value is indexes of beans in list:
+	private Map<Mapper<?>, List<Integer>> groupByMapper(List<?> beans) {
+		Map<Mapper<?>, List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < beans.size(); i++) {
+			Mapper<?> mapper = getMapper(beans.get(i).getClass());
+			groups.computeIfAbsent(mapper, (key) -> new ArrayList<>()).add(i);
+		}
+		return groups;
+	}
+
 	// get mapper by class:
 	@SuppressWarnings("unchecked")
 	<T> Mapper<T> getMapper(Class<T> clazz) {
 		Mapper<T> mapper = (Mapper<T>) this.classMapping.get(clazz);
 		if (mapper == null) {
-			throw new RuntimeException("Target class is not a registered entity: " + clazz.getName());
+			Callable<Mapper<?>> builder = this.mapperBuilders.get(clazz);
+			if (builder == null) {
+				// entity index of incremental or IDE build may be incomplete:
+				if (!clazz.isAnnotationPresent(Entity.class) || !clazz.getName().startsWith(this.basePackage + ".")) {
+					throw new RuntimeException("Target class is not a registered entity: " + clazz.getName());
+				}
+				logger.warn("Entity " + clazz.getName() + " is not indexed, build mapper by reflection.");
+				builder = () -> new Mapper<>(clazz);
+			}
+			// build lazily, a mapper built by another thread at the same time wins:
+			Mapper<?> built = buildMapper(clazz, builder);
+			Mapper<?> existing = this.classMapping.putIfAbsent(clazz, built);
+			mapper = (Mapper<T>) (existing == null ? built : existing);
 		}
 		return mapper;
 	}
@@ -0,0 +1,46 @@
+package com.jacky.orm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Second-level cache of one entity class, shared by all transactions.
+ * 
+ * Values are property values of entity (see Mapper.snapshot()), so each hit
+ * returns a new bean and cached state is never shared between callers.
+ */
+final class EntityCache {
+
+	final LruCache<Object, Object[]> cache;
+
+	// increased on every invalidation, so a load started before it is not cached:
+	final AtomicLong version = new AtomicLong();
+
+	EntityCache(int maxSize, long ttlMillis) {
+		this.cache = new LruCache<>(maxSize, ttlMillis);
+	}
+
+	Object[] get(Object id) {
+		return this.cache.get(id);
+	}
+
+	long version() {
+		return this.version.get();
+	}
+
+	void put(Object id, Object[] values, long loadVersion) {
+		this.cache.put(id, values);
+		if (this.version.get() != loadVersion) {
+			// invalidated during load:
+			this.cache.remove(id);
+		}
+	}
+
+	void evict(Object id) {
+		this.version.incrementAndGet();
+		this.cache.remove(id);
+	}
+
+	CacheStats stats() {
+		return this.cache.stats();
+	}
+}
@@ -0,0 +1,105 @@
+package com.jacky.orm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Load entity mappers from index generated by EntityIndexProcessor at compile
+ * time, which avoids classpath scanning and Introspector.
+ */
+final class EntityIndex {
+
+	static final String LOCATION = "META-INF/orm/entities.index";
+
+	private EntityIndex() {
+	}
+
+	/**
+	 * Load entries of entities in base package from all indexes on classpath.
+	 *
+	 * @param classLoader The class loader.
+	 * @param basePackage Package of entities.
+	 * @return List of entry, or null if no index found or no entity in base
+	 *         package is indexed.
+	 */
+	static List<Entry> load(ClassLoader classLoader, String basePackage) throws IOException {
+		Enumeration<URL> urls = classLoader.getResources(LOCATION);
+		List<Entry> entries = new ArrayList<>();
+		while (urls.hasMoreElements()) {
+			for (Entry entry : read(urls.nextElement())) {
+				if (entry.className.startsWith(basePackage + ".")) {
+					entries.add(entry);
+				}
+			}
+		}
+		return entries.isEmpty() ? null : entries;
+	}
+
+	private static List<Entry> read(URL url) throws IOException {
+		List<Entry> entries = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+			Entry entry = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] ss = line.split("\t");
+				// entity flags and column definition may be absent in index of older version:
+				if (ss[0].equals("entity") && (ss.length == 3 || ss.length == 4)) {
+					entry = new Entry(ss[1], ss[2], ss.length == 4 && ss[3].equals("cacheable"));
+					entries.add(entry);
+				} else if (ss[0].equals("property") && (ss.length == 6 || ss.length == 7) && entry != null) {
+					entry.properties.add(ss);
+				} else {
+					throw new IOException("Invalid line in " + url + ": " + line);
+				}
+			}
+		}
+		return entries;
+	}
+
+	static final class Entry {
+
+		final String className;
+		final String tableName;
+		final boolean cacheable;
+		// "property", name, column, getter, setter, flags, "length,precision,scale":
+		final List<String[]> properties = new ArrayList<>();
+
+		Entry(String className, String tableName, boolean cacheable) {
+			this.className = className;
+			this.tableName = tableName;
+			this.cacheable = cacheable;
+		}
+
+		Mapper<?> toMapper(Class<?> clazz) throws Exception {
+			List<AccessibleProperty> props = new ArrayList<>(this.properties.size());
+			for (String[] ss : this.properties) {
+				Method getter = clazz.getMethod(ss[3]);
+				Method setter = clazz.getMethod(ss[4], getter.getReturnType());
+				List<String> flags = Arrays.asList(ss[5].split(","));
+				String[] def = ss.length == 7 ? ss[6].split(",") : new String[] { "255", "0", "0" };
+				props.add(new AccessibleProperty(getter, setter, ss[1], ss[2], flags.contains("id"),
+						flags.contains("identity"), flags.contains("version"), flags.contains("insertable"),
+						flags.contains("updatable"), flags.contains("unique"), Integer.parseInt(def[0]),
+						Integer.parseInt(def[1]), Integer.parseInt(def[2])));
+			}
+			return newMapper(clazz, this.tableName, props, this.cacheable);
+		}
+
+		private static <T> Mapper<T> newMapper(Class<T> clazz, String tableName, List<AccessibleProperty> props,
+				boolean cacheable) {
+			return new Mapper<>(clazz, tableName, props, cacheable);
+		}
+	}
+}
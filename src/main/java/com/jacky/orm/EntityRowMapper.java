@@ -0,0 +1,187 @@
+package com.jacky.orm;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Map rows of result set to entity beans.
+ *
+ * Column positions are resolved once per result set shape (the list of column
+ * labels) and cached, then each row is read by typed getXxx() and set by the
+ * property's bound setter. Primitive properties are set by setters bound to
+ * primitive parameter, without boxing. Columns not mapped to any property are
+ * ignored, so projections like select("name") work.
+ *
+ * @param <T> Entity type.
+ */
+final class EntityRowMapper<T> implements ResultSetExtractor<List<T>> {
+
+	final Supplier<T> constructor;
+
+	// lower-case column name (or property name) -> AccessibleProperty
+	final Map<String, AccessibleProperty> columnMap;
+
+	// property -> column setter, bound once for all shapes:
+	final Map<AccessibleProperty, ColumnSetter> columnSetters = new IdentityHashMap<>();
+
+	// column labels -> compiled row mapper
+	final Map<String, RowMapper<T>> shapes = new ConcurrentHashMap<>();
+
+	EntityRowMapper(Class<T> entityClass, List<AccessibleProperty> properties) {
+		this.constructor = Accessors.constructor(entityClass);
+		Map<String, AccessibleProperty> map = new HashMap<>();
+		for (AccessibleProperty prop : properties) {
+			map.put(prop.columnName.toLowerCase(), prop);
+			this.columnSetters.put(prop, columnSetter(prop));
+		}
+		for (AccessibleProperty prop : properties) {
+			map.putIfAbsent(prop.propertyName.toLowerCase(), prop);
+		}
+		this.columnMap = map;
+	}
+
+	@Override
+	public List<T> extractData(ResultSet rs) throws SQLException {
+		RowMapper<T> rowMapper = forResultSet(rs);
+		List<T> list = new ArrayList<>();
+		int rowNum = 0;
+		while (rs.next()) {
+			list.add(rowMapper.mapRow(rs, rowNum));
+			rowNum++;
+		}
+		return list;
+	}
+
+	/**
+	 * Get compiled row mapper for the shape of result set.
+	 *
+	 * @param rs The result set.
+	 * @return RowMapper which is safe to reuse for any result set of same shape.
+	 */
+	RowMapper<T> forResultSet(ResultSet rs) throws SQLException {
+		ResultSetMetaData meta = rs.getMetaData();
+		int count = meta.getColumnCount();
+		StringBuilder sb = new StringBuilder(count * 16);
+		for (int i = 1; i <= count; i++) {
+			sb.append(JdbcUtils.lookupColumnName(meta, i)).append(',');
+		}
+		String shape = sb.toString();
+		RowMapper<T> rowMapper = this.shapes.get(shape);
+		if (rowMapper == null) {
+			rowMapper = compile(meta);
+			this.shapes.put(shape, rowMapper);
+		}
+		return rowMapper;
+	}
+
+	private RowMapper<T> compile(ResultSetMetaData meta) throws SQLException {
+		int count = meta.getColumnCount();
+		List<Integer> indexes = new ArrayList<>(count);
+		List<AccessibleProperty> props = new ArrayList<>(count);
+		for (int i = 1; i <= count; i++) {
+			AccessibleProperty prop = this.columnMap.get(JdbcUtils.lookupColumnName(meta, i).toLowerCase());
+			if (prop != null) {
+				indexes.add(i);
+				props.add(prop);
+			}
+		}
+		final int n = props.size();
+		final int[] columnIndexes = new int[n];
+		final ColumnSetter[] setters = new ColumnSetter[n];
+		for (int i = 0; i < n; i++) {
+			columnIndexes[i] = indexes.get(i);
+			setters[i] = this.columnSetters.get(props.get(i));
+		}
+		return (rs, rowNum) -> {
+			T bean = constructor.get();
+			for (int i = 0; i < n; i++) {
+				setters[i].set(rs, columnIndexes[i], bean);
+			}
+			return bean;
+		};
+	}
+
+	/**
+	 * Read column of current row and set it to property of bean.
+	 */
+	@FunctionalInterface
+	interface ColumnSetter {
+
+		void set(ResultSet rs, int index, Object bean) throws SQLException;
+	}
+
+	// primitive properties are read by typed getXxx() and set without boxing:
+	static ColumnSetter columnSetter(AccessibleProperty prop) {
+		Class<?> type = prop.propertyType;
+		if (type == long.class) {
+			ObjLongConsumer<Object> s = Accessors.longSetter(prop.setter);
+			return (rs, index, bean) -> s.accept(bean, rs.getLong(index));
+		}
+		if (type == int.class) {
+			ObjIntConsumer<Object> s = Accessors.intSetter(prop.setter);
+			return (rs, index, bean) -> s.accept(bean, rs.getInt(index));
+		}
+		if (type == double.class) {
+			ObjDoubleConsumer<Object> s = Accessors.doubleSetter(prop.setter);
+			return (rs, index, bean) -> s.accept(bean, rs.getDouble(index));
+		}
+		if (type == boolean.class) {
+			Accessors.ObjBooleanConsumer s = Accessors.booleanSetter(prop.setter);
+			return (rs, index, bean) -> s.accept(bean, rs.getBoolean(index));
+		}
+		ColumnReader reader = columnReader(type);
+		return (rs, index, bean) -> prop.set(bean, reader.read(rs, index));
+	}
+
+	@FunctionalInterface
+	interface ColumnReader {
+
+		Object read(ResultSet rs, int index) throws SQLException;
+	}
+
+	static ColumnReader columnReader(Class<?> type) {
+		if (type == String.class) {
+			return ResultSet::getString;
+		}
+		if (type == Long.class) {
+			return (rs, index) -> {
+				long value = rs.getLong(index);
+				return rs.wasNull() ? null : value;
+			};
+		}
+		if (type == Integer.class) {
+			return (rs, index) -> {
+				int value = rs.getInt(index);
+				return rs.wasNull() ? null : value;
+			};
+		}
+		if (type == Boolean.class) {
+			return (rs, index) -> {
+				boolean value = rs.getBoolean(index);
+				return rs.wasNull() ? null : value;
+			};
+		}
+		if (type == Double.class) {
+			return (rs, index) -> {
+				double value = rs.getDouble(index);
+				return rs.wasNull() ? null : value;
+			};
+		}
+		return (rs, index) -> JdbcUtils.getResultSetValue(rs, index, type);
+	}
+}
@@ -0,0 +1,59 @@
+package com.jacky.orm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+/**
+ * Encode / decode cursor token of keyset pagination.
+ * 
+ * A token is the order by values of the last row of a page, each value is
+ * encoded as URL-safe base64 string, or "~" for null, and joined by ".".
+ */
+final class KeysetCursor {
+
+	static final String NULL = "~";
+
+	private KeysetCursor() {
+	}
+
+	static String encode(Object[] values) {
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		StringBuilder sb = new StringBuilder(values.length * 16);
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				sb.append('.');
+			}
+			if (values[i] == null) {
+				sb.append(NULL);
+			} else {
+				sb.append(encoder.encodeToString(values[i].toString().getBytes(StandardCharsets.UTF_8)));
+			}
+		}
+		return sb.toString();
+	}
+
+	static Object[] decode(String cursor, AccessibleProperty[] properties) {
+		String[] parts = cursor.split("\\.", -1);
+		if (parts.length != properties.length) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+		Base64.Decoder decoder = Base64.getUrlDecoder();
+		ConversionService conversion = DefaultConversionService.getSharedInstance();
+		Object[] values = new Object[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			if (parts[i].equals(NULL)) {
+				continue;
+			}
+			try {
+				String s = new String(decoder.decode(parts[i]), StandardCharsets.UTF_8);
+				values[i] = conversion.convert(s, properties[i].propertyType);
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+			}
+		}
+		return values;
+	}
+}
@@ -1,6 +1,11 @@
 package com.jacky.orm;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.reactivestreams.Publisher;
 
 /**
  * select ... from ... LIMIT ?, ?
@@ -19,10 +24,35 @@ public final class Limit<T> extends CriteriaQuery<T> {
 		if (maxResults <= 0) {
 			throw new IllegalArgumentException("maxResults must be > 0.");
 		}
+		if (offset > 0 && criteria.seekAfter != null) {
+			throw new IllegalArgumentException("offset must be 0 when using keyset pagination.");
+		}
 		this.criteria.offset = offset;
 		this.criteria.maxResults = maxResults;
 	}
 
+	/**
+	 * Cache results of this query. Cached results are discarded after any
+	 * DbTemplate write to the same table is committed.
+	 * 
+	 * @return Criteria query object.
+	 */
+	public Limit<T> cached() {
+		criteria.cached = true;
+		return this;
+	}
+
+	/**
+	 * Compile this query to an immutable PreparedQuery which can be executed
+	 * many times with different arguments of where clause. Arguments passed to
+	 * where() are ignored.
+	 * 
+	 * @return PreparedQuery object.
+	 */
+	public PreparedQuery<T> prepare() {
+		return new PreparedQuery<>(criteria);
+	}
+
 	/**
 	 * Get all results as list.
 	 * 
@@ -31,4 +61,55 @@ public final class Limit<T> extends CriteriaQuery<T> {
 	public List<T> list() {
 		return criteria.list();
 	}
+
+	/**
+	 * Get results as a page of keyset pagination. Query must have order by.
+	 * 
+	 * @return Page with results and cursor token of next page.
+	 */
+	public Page<T> page() {
+		return criteria.page();
+	}
+
+	/**
+	 * Get all results as list asynchronously. The query runs on the executor of
+	 * DbTemplate, outside the caller's transaction.
+	 * 
+	 * @return Future of list of object T.
+	 */
+	public CompletableFuture<List<T>> listAsync() {
+		return criteria.listAsync();
+	}
+
+	/**
+	 * Get results as stream which reads rows from an open cursor. The stream
+	 * holds a connection and must be closed after use, e.g. by
+	 * try-with-resources.
+	 * 
+	 * @return Stream of object T.
+	 */
+	public Stream<T> stream() {
+		return criteria.stream();
+	}
+
+	/**
+	 * Get results as publisher which reads rows from an open cursor only as
+	 * subscriber requests. The cursor is on its own connection outside the
+	 * caller's transaction, and is closed when the subscription completes or is
+	 * cancelled.
+	 * 
+	 * @return Publisher of object T.
+	 */
+	public Publisher<T> publisher() {
+		return criteria.publisher();
+	}
+
+	/**
+	 * Read results one by one from an open cursor and pass each to action.
+	 * 
+	 * @param action The action for each object T.
+	 */
+	public void forEach(Consumer<? super T> action) {
+		criteria.forEach(action);
+	}
 }
@@ -0,0 +1,161 @@
+package com.jacky.orm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded LRU cache with optional time-to-live.
+ * 
+ * Keys are spread over segments, each is an access-ordered LinkedHashMap
+ * guarded by its own lock, so concurrent readers of different keys rarely
+ * contend and there is no global lock.
+ * 
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+final class LruCache<K, V> {
+
+	static final int MAX_SEGMENTS = 16;
+
+	final Segment<K, V>[] segments;
+	final long ttlNanos;
+
+	final LongAdder hits = new LongAdder();
+	final LongAdder misses = new LongAdder();
+	final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Create cache.
+	 * 
+	 * @param maxSize   Max number of entries.
+	 * @param ttlMillis Time-to-live after write in milliseconds, 0 means never
+	 *                  expire.
+	 */
+	LruCache(int maxSize, long ttlMillis) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be > 0.");
+		}
+		int n = 1;
+		while (n < MAX_SEGMENTS && n * 2 <= maxSize) {
+			n = n * 2;
+		}
+		int segmentSize = (maxSize + n - 1) / n;
+		this.segments = newSegments(n);
+		for (int i = 0; i < n; i++) {
+			this.segments[i] = new Segment<>(segmentSize, this.evictions);
+		}
+		this.ttlNanos = ttlMillis * 1_000_000L;
+	}
+
+	V get(K key) {
+		return get(key, null);
+	}
+
+	/**
+	 * Get value, entry which is expired or not valid is removed and counted as
+	 * eviction.
+	 * 
+	 * @param key   The key.
+	 * @param valid Test if value is still valid, or null.
+	 * @return Value or null.
+	 */
+	V get(K key, Predicate<V> valid) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			Entry<V> entry = segment.map.get(key);
+			if (entry != null && ((this.ttlNanos > 0 && System.nanoTime() - entry.writeTime > this.ttlNanos)
+					|| (valid != null && !valid.test(entry.value)))) {
+				segment.map.remove(key);
+				this.evictions.increment();
+				entry = null;
+			}
+			if (entry == null) {
+				this.misses.increment();
+				return null;
+			}
+			this.hits.increment();
+			return entry.value;
+		}
+	}
+
+	void put(K key, V value) {
+		Segment<K, V> segment = segmentFor(key);
+		Entry<V> entry = new Entry<>(value, this.ttlNanos > 0 ? System.nanoTime() : 0L);
+		synchronized (segment) {
+			segment.map.put(key, entry);
+		}
+	}
+
+	void remove(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.map.remove(key);
+		}
+	}
+
+	void clear() {
+		for (Segment<K, V> segment : this.segments) {
+			synchronized (segment) {
+				segment.map.clear();
+			}
+		}
+	}
+
+	long size() {
+		long size = 0;
+		for (Segment<K, V> segment : this.segments) {
+			synchronized (segment) {
+				size += segment.map.size();
+			}
+		}
+		return size;
+	}
+
+	CacheStats stats() {
+		return new CacheStats(this.hits.sum(), this.misses.sum(), this.evictions.sum(), size());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Segment<K, V>[] newSegments(int n) {
+		return (Segment<K, V>[]) new Segment<?, ?>[n];
+	}
+
+	private Segment<K, V> segmentFor(Object key) {
+		int h = key.hashCode();
+		h = h ^ (h >>> 16);
+		return this.segments[h & (this.segments.length - 1)];
+	}
+
+	static final class Entry<V> {
+
+		final V value;
+		final long writeTime;
+
+		Entry(V value, long writeTime) {
+			this.value = value;
+			this.writeTime = writeTime;
+		}
+	}
+
+	static final class Segment<K, V> {
+
+		final LinkedHashMap<K, Entry<V>> map;
+
+		Segment(int maxSize, LongAdder evictions) {
+			this.map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+					if (size() > maxSize) {
+						evictions.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+	}
+}
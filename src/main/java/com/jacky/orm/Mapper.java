@@ -4,21 +4,33 @@ import java.beans.BeanInfo;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
 
 final class Mapper<T> {
 
+	// sizes of "IN (?, ?, ...)" used by bulk statements, so SQL text repeats:
+	static final int[] IN_SIZES = { 1, 4, 16, 64, 256 };
+
 	final Class<T> entityClass;
 	final String tableName;
 
@@ -31,48 +43,327 @@ final class Mapper<T> {
 	// lower-case property name -> AccessibleProperty
 	final Map<String, AccessibleProperty> allPropertiesMap;
 
+	// property marked as @Version, or null:
+	final AccessibleProperty version;
+
 	final List<AccessibleProperty> insertableProperties;
 	final List<AccessibleProperty> updatableProperties;
 
 	// lower-case property name -> AccessibleProperty
 	final Map<String, AccessibleProperty> updatablePropertiesMap;
 
-	final RowMapper<T> rowMapper;
+	final EntityRowMapper<T> rowMapper;
+
+	// is marked as @Cacheable:
+	final boolean cacheable;
+
+	static final Set<Class<?>> VERSION_TYPES = new HashSet<>(
+			Arrays.asList(long.class, Long.class, int.class, Integer.class));
 
 	final String selectSQL;
 	final String insertSQL;
 	final String updateSQL;
 	final String deleteSQL;
 
+	// changed properties bitmask -> "UPDATE ... SET (changed columns) WHERE id = ?"
+	final Map<Long, String> partialUpdateSQLs = new ConcurrentHashMap<>();
+
+	// key property name -> "MERGE INTO ... ON key"
+	final Map<String, String> mergeSQLs = new ConcurrentHashMap<>();
+
+	// IN size -> "SELECT ... WHERE id IN (...)"
+	final Map<Integer, String> selectInSQLs = new ConcurrentHashMap<>();
+
+	// IN size -> "DELETE ... WHERE id IN (...)"
+	final Map<Integer, String> deleteInSQLs = new ConcurrentHashMap<>();
+
 	public Mapper(Class<T> clazz) throws Exception {
-		List<AccessibleProperty> all = getProperties(clazz);
+		this(clazz, getTableName(clazz), getProperties(clazz), isCacheable(clazz));
+	}
+
+	/**
+	 * Create mapper by metadata already resolved, e.g. loaded from entity index.
+	 */
+	Mapper(Class<T> clazz, String tableName, List<AccessibleProperty> all, boolean cacheable) {
 		AccessibleProperty[] ids = all.stream().filter(AccessibleProperty::isId).toArray(AccessibleProperty[]::new);
 		if (ids.length != 1) {
 			throw new RuntimeException("Require exact one @Id.");
 		}
 		this.id = ids[0];
+		AccessibleProperty[] versions = all.stream().filter(AccessibleProperty::isVersion)
+				.toArray(AccessibleProperty[]::new);
+		if (versions.length > 1) {
+			throw new RuntimeException("Require at most one @Version.");
+		}
+		this.version = versions.length == 0 ? null : versions[0];
+		if (this.version != null && !VERSION_TYPES.contains(this.version.propertyType)) {
+			throw new RuntimeException("@Version must be long, Long, int or Integer: " + this.version.propertyName);
+		}
 		this.allProperties = all;
 		this.allPropertiesMap = buildPropertiesMap(this.allProperties);
 		this.insertableProperties = all.stream().filter(AccessibleProperty::isInsertable).collect(Collectors.toList());
 		this.updatableProperties = all.stream().filter(AccessibleProperty::isUpdatable).collect(Collectors.toList());
 		this.updatablePropertiesMap = buildPropertiesMap(this.updatableProperties);
 		this.entityClass = clazz;
-		this.tableName = getTableName(clazz);
+		this.tableName = tableName;
 
 		this.selectSQL = "SELECT * FROM " + this.tableName + " WHERE " + this.id.columnName + " = ?";
 		this.insertSQL = "INSERT INTO " + this.tableName + " ("
 				+ String.join(", ", this.insertableProperties.stream().map(p -> p.columnName).toArray(String[]::new))
 				+ ") VALUES (" + numOfQuestions(this.insertableProperties.size()) + ")";
-		this.updateSQL = "UPDATE " + this.tableName + " SET "
-				+ String.join(", ",
-						this.updatableProperties.stream().map(p -> p.columnName + " = ?").toArray(String[]::new))
-				+ " WHERE " + this.id.columnName + " = ?";
+		this.updateSQL = buildUpdateSQL(
+				this.updatableProperties.stream().map(p -> p.columnName + " = ?").collect(Collectors.toList()));
 		this.deleteSQL = "DELETE FROM " + this.tableName + " WHERE " + this.id.columnName + " = ?";
-		this.rowMapper = new BeanPropertyRowMapper<>(this.entityClass);
+		this.rowMapper = new EntityRowMapper<>(this.entityClass, this.allProperties);
+		this.cacheable = cacheable;
+	}
+
+	private static boolean isCacheable(Class<?> clazz) {
+		Cacheable cacheable = clazz.getAnnotation(Cacheable.class);
+		return cacheable != null && cacheable.value();
+	}
+
+	Object getIdValue(Object bean) {
+		return this.id.get(bean);
+	}
+
+	// convert number id to the type of id property, e.g. Integer to Long:
+	Object normalizeId(Object id) {
+		if (id instanceof Number) {
+			Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(this.id.propertyType);
+			if (!type.isInstance(id) && Number.class.isAssignableFrom(type)) {
+				return NumberUtils.convertNumberToTargetClass((Number) id, type.asSubclass(Number.class));
+			}
+		}
+		return id;
+	}
+
+	// get copy of values of all properties, mutable values like Date are copied
+	// so the snapshot is not changed with bean:
+	Object[] snapshot(Object bean) {
+		Object[] values = new Object[this.allProperties.size()];
+		for (int i = 0; i < values.length; i++) {
+			AccessibleProperty prop = this.allProperties.get(i);
+			values[i] = prop.snapshotValue(prop.get(bean));
+		}
+		return values;
+	}
+
+	// create bean from copy of values of all properties, so the values are not
+	// changed with bean:
+	T restore(Object[] values) {
+		T bean = this.rowMapper.constructor.get();
+		for (int i = 0; i < values.length; i++) {
+			AccessibleProperty prop = this.allProperties.get(i);
+			prop.set(bean, prop.snapshotValue(values[i]));
+		}
+		return bean;
+	}
+
+	// get values of updatable properties:
+	Object[] updatableValues(Object bean) {
+		Object[] values = new Object[this.updatableProperties.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = this.updatableProperties.get(i).get(bean);
+		}
+		return values;
+	}
+
+	// bind insertable properties as parameters of insertSQL:
+	void bindInsert(PreparedStatement ps, Object bean) throws SQLException {
+		List<AccessibleProperty> props = this.insertableProperties;
+		for (int i = 0; i < props.size(); i++) {
+			props.get(i).bind(ps, i + 1, bean);
+		}
+	}
+
+	// bind updatable properties, id and version as parameters of updateSQL:
+	void bindUpdate(PreparedStatement ps, Object bean) throws SQLException {
+		List<AccessibleProperty> props = this.updatableProperties;
+		for (int i = 0; i < props.size(); i++) {
+			props.get(i).bind(ps, i + 1, bean);
+		}
+		this.id.bind(ps, props.size() + 1, bean);
+		if (this.version != null) {
+			this.version.bind(ps, props.size() + 2, bean);
+		}
+	}
+
+	// set version of new bean to 0 if it is null:
+	void initVersion(Object bean) {
+		if (this.version != null && this.version.get(bean) == null) {
+			this.version.set(bean, this.version.propertyType == Integer.class ? (Object) 0 : (Object) 0L);
+		}
 	}
 
-	Object getIdValue(Object bean) throws ReflectiveOperationException {
-		return this.id.getter.invoke(bean);
+	// increase version of bean after it is updated:
+	void increaseVersion(Object bean) {
+		Object v = this.version.get(bean);
+		if (v instanceof Integer) {
+			this.version.set(bean, ((Integer) v).intValue() + 1);
+		} else {
+			this.version.set(bean, ((Long) v).longValue() + 1);
+		}
+	}
+
+	// get values of updatable properties for dirty checking, mutable values are
+	// copied:
+	Object[] updatableSnapshot(Object bean) {
+		Object[] values = new Object[this.updatableProperties.size()];
+		for (int i = 0; i < values.length; i++) {
+			AccessibleProperty prop = this.updatableProperties.get(i);
+			values[i] = prop.snapshotValue(prop.get(bean));
+		}
+		return values;
+	}
+
+	/**
+	 * Get UPDATE statement which only sets the updatable properties whose bit is
+	 * set in mask. Bit i means updatableProperties.get(i).
+	 */
+	String updateSQL(long mask) {
+		return this.partialUpdateSQLs.computeIfAbsent(mask, (m) -> {
+			List<String> sets = new ArrayList<>();
+			for (int i = 0; i < this.updatableProperties.size(); i++) {
+				if ((m & (1L << i)) != 0) {
+					sets.add(this.updatableProperties.get(i).columnName + " = ?");
+				}
+			}
+			return buildUpdateSQL(sets);
+		});
+	}
+
+	// "UPDATE ... SET sets, version = version + 1 WHERE id = ? AND version = ?":
+	private String buildUpdateSQL(List<String> sets) {
+		List<String> all = new ArrayList<>(sets);
+		if (this.version != null) {
+			all.add(this.version.columnName + " = " + this.version.columnName + " + 1");
+		}
+		return "UPDATE " + this.tableName + " SET " + String.join(", ", all) + " WHERE " + this.id.columnName
+				+ " = ?" + (this.version == null ? "" : " AND " + this.version.columnName + " = ?");
+	}
+
+	/**
+	 * Get key property of upsert: the first property marked as
+	 * &#64;Column(unique = true), or the &#64;Id property if none.
+	 */
+	AccessibleProperty defaultUpsertKey() {
+		for (AccessibleProperty prop : this.allProperties) {
+			if (prop.isUnique() && !prop.isId()) {
+				return prop;
+			}
+		}
+		return this.id;
+	}
+
+	/**
+	 * Get source properties of MERGE statement: the key and all insertable
+	 * properties, in the order of parameters.
+	 */
+	List<AccessibleProperty> mergeProperties(AccessibleProperty key) {
+		List<AccessibleProperty> props = new ArrayList<>(this.insertableProperties.size() + 1);
+		if (!this.insertableProperties.contains(key)) {
+			props.add(key);
+		}
+		props.addAll(this.insertableProperties);
+		return props;
+	}
+
+	/**
+	 * Get "MERGE INTO ... USING (VALUES (...)) ... ON t.key = s.key WHEN MATCHED
+	 * THEN UPDATE ... WHEN NOT MATCHED THEN INSERT ..." with parameters of
+	 * mergeProperties(key).
+	 */
+	String mergeSQL(AccessibleProperty key) {
+		return this.mergeSQLs.computeIfAbsent(key.propertyName, (k) -> {
+			List<AccessibleProperty> props = mergeProperties(key);
+			String values = String.join(", ",
+					props.stream().map(p -> "CAST(? AS " + sqlType(p) + ")").toArray(String[]::new));
+			String columns = String.join(", ", props.stream().map(p -> p.columnName).toArray(String[]::new));
+			List<String> sets = this.updatableProperties.stream().filter(p -> p != key)
+					.map(p -> "t." + p.columnName + " = s." + p.columnName).collect(Collectors.toCollection(ArrayList::new));
+			if (this.version != null) {
+				sets.add("t." + this.version.columnName + " = t." + this.version.columnName + " + 1");
+			}
+			String updates = String.join(", ", sets);
+			String inserts = String.join(", ",
+					this.insertableProperties.stream().map(p -> p.columnName).toArray(String[]::new));
+			String insertValues = String.join(", ",
+					this.insertableProperties.stream().map(p -> "s." + p.columnName).toArray(String[]::new));
+			return "MERGE INTO " + this.tableName + " t USING (VALUES (" + values + ")) AS s (" + columns + ") ON t."
+					+ key.columnName + " = s." + key.columnName
+					+ (updates.isEmpty() ? "" : " WHEN MATCHED THEN UPDATE SET " + updates)
+					+ " WHEN NOT MATCHED THEN INSERT (" + inserts + ") VALUES (" + insertValues + ")";
+		});
+	}
+
+	// SQL type used to cast parameter of MERGE source:
+	static String sqlType(AccessibleProperty prop) {
+		Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(prop.propertyType);
+		if (type == String.class) {
+			return "VARCHAR(" + prop.length + ")";
+		}
+		if (type == Long.class) {
+			return "BIGINT";
+		}
+		if (type == Integer.class) {
+			return "INTEGER";
+		}
+		if (type == Short.class) {
+			return "SMALLINT";
+		}
+		if (type == Boolean.class) {
+			return "BOOLEAN";
+		}
+		if (type == Double.class || type == Float.class) {
+			return "DOUBLE";
+		}
+		if (type == BigDecimal.class) {
+			int precision = prop.precision == 0 ? 38 : prop.precision;
+			return "DECIMAL(" + precision + ", " + prop.scale + ")";
+		}
+		if (type == Timestamp.class || type == java.util.Date.class) {
+			return "TIMESTAMP";
+		}
+		if (type == java.sql.Date.class) {
+			return "DATE";
+		}
+		throw new IllegalArgumentException("Cannot upsert property of type " + type.getName() + ": " + prop.propertyName);
+	}
+
+	String selectInSQL(int size) {
+		return this.selectInSQLs.computeIfAbsent(size, (n) -> "SELECT * FROM " + this.tableName + " WHERE "
+				+ this.id.columnName + " IN (" + numOfQuestions(n) + ")");
+	}
+
+	String deleteInSQL(int size) {
+		return this.deleteInSQLs.computeIfAbsent(size, (n) -> "DELETE FROM " + this.tableName + " WHERE "
+				+ this.id.columnName + " IN (" + numOfQuestions(n) + ")");
+	}
+
+	/**
+	 * Split ids into chunks whose length is one of IN_SIZES. The last chunk is
+	 * padded by repeating its last id.
+	 */
+	static List<Object[]> chunkIds(Collection<?> ids) {
+		Object[] all = ids.toArray();
+		int max = IN_SIZES[IN_SIZES.length - 1];
+		List<Object[]> chunks = new ArrayList<>(all.length / max + 1);
+		for (int start = 0; start < all.length; start += max) {
+			int len = Math.min(max, all.length - start);
+			int size = max;
+			for (int s : IN_SIZES) {
+				if (s >= len) {
+					size = s;
+					break;
+				}
+			}
+			Object[] chunk = new Object[size];
+			System.arraycopy(all, start, chunk, 0, len);
+			Arrays.fill(chunk, len, size, all[start + len - 1]);
+			chunks.add(chunk);
+		}
+		return chunks;
 	}
 
 	Map<String, AccessibleProperty> buildPropertiesMap(List<AccessibleProperty> props) {
@@ -90,7 +381,7 @@ final class Mapper<T> {
 		}).toArray(String[]::new));
 	}
 
-	private String getTableName(Class<?> clazz) {
+	private static String getTableName(Class<?> clazz) {
 		Table table = clazz.getAnnotation(Table.class);
 		if (table != null && !table.name().isEmpty()) {
 			return table.name();
@@ -98,7 +389,7 @@ final class Mapper<T> {
 		return clazz.getSimpleName();
 	}
 
-	private List<AccessibleProperty> getProperties(Class<?> clazz) throws Exception {
+	private static List<AccessibleProperty> getProperties(Class<?> clazz) throws Exception {
 		List<AccessibleProperty> properties = new ArrayList<>();
 		BeanInfo info = Introspector.getBeanInfo(clazz);
 		for (PropertyDescriptor pd : info.getPropertyDescriptors()) {
@@ -2,6 +2,11 @@ package com.jacky.orm;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.reactivestreams.Publisher;
 
 /**
  * select ... from ... ORDER BY ...
@@ -70,6 +75,42 @@ public final class OrderBy<T> extends CriteriaQuery<T> {
 		return this;
 	}
 
+	/**
+	 * Use keyset pagination: only return rows after the row which has the given
+	 * order by values. The id is appended to order by if it is not ordered by id,
+	 * so values must match order by fields followed by id, e.g.
+	 * orderBy("createdAt") then after(lastCreatedAt, lastId).
+	 * 
+	 * @param values Order by values of the last row of previous page.
+	 * @return Criteria query object.
+	 */
+	public OrderBy<T> after(Object... values) {
+		criteria.useKeyset();
+		List<String> orders = criteria.orderByList();
+		if (values.length != orders.size()) {
+			throw new IllegalArgumentException("Keyset values must match order by fields: " + orders);
+		}
+		criteria.seekAfter = values;
+		return this;
+	}
+
+	/**
+	 * Use keyset pagination: only return rows after the cursor token returned by
+	 * Page.getNextCursor(). Null or empty cursor means the first page.
+	 * 
+	 * @param cursor The cursor token.
+	 * @return Criteria query object.
+	 */
+	public OrderBy<T> afterCursor(String cursor) {
+		criteria.useKeyset();
+		if (cursor == null || cursor.isEmpty()) {
+			criteria.seekAfter = null;
+			return this;
+		}
+		criteria.seekAfter = KeysetCursor.decode(cursor, criteria.orderByProperties());
+		return this;
+	}
+
 	/**
 	 * Add limit clause.
 	 * 
@@ -91,6 +132,28 @@ public final class OrderBy<T> extends CriteriaQuery<T> {
 		return new Limit<>(this.criteria, offset, maxResults);
 	}
 
+	/**
+	 * Cache results of this query. Cached results are discarded after any
+	 * DbTemplate write to the same table is committed.
+	 * 
+	 * @return Criteria query object.
+	 */
+	public OrderBy<T> cached() {
+		criteria.cached = true;
+		return this;
+	}
+
+	/**
+	 * Compile this query to an immutable PreparedQuery which can be executed
+	 * many times with different arguments of where clause. Arguments passed to
+	 * where() are ignored.
+	 * 
+	 * @return PreparedQuery object.
+	 */
+	public PreparedQuery<T> prepare() {
+		return new PreparedQuery<>(criteria);
+	}
+
 	/**
 	 * Get all results as list.
 	 * 
@@ -108,4 +171,55 @@ public final class OrderBy<T> extends CriteriaQuery<T> {
 	public T first() {
 		return criteria.first();
 	}
+
+	/**
+	 * Get all results as list asynchronously. The query runs on the executor of
+	 * DbTemplate, outside the caller's transaction.
+	 * 
+	 * @return Future of list of object T.
+	 */
+	public CompletableFuture<List<T>> listAsync() {
+		return criteria.listAsync();
+	}
+
+	/**
+	 * Get first row of the query asynchronously, or null if no result found.
+	 * 
+	 * @return Future of object T or null.
+	 */
+	public CompletableFuture<T> firstAsync() {
+		return criteria.firstAsync();
+	}
+
+	/**
+	 * Get results as stream which reads rows from an open cursor. The stream
+	 * holds a connection and must be closed after use, e.g. by
+	 * try-with-resources.
+	 * 
+	 * @return Stream of object T.
+	 */
+	public Stream<T> stream() {
+		return criteria.stream();
+	}
+
+	/**
+	 * Get results as publisher which reads rows from an open cursor only as
+	 * subscriber requests. The cursor is on its own connection outside the
+	 * caller's transaction, and is closed when the subscription completes or is
+	 * cancelled.
+	 * 
+	 * @return Publisher of object T.
+	 */
+	public Publisher<T> publisher() {
+		return criteria.publisher();
+	}
+
+	/**
+	 * Read results one by one from an open cursor and pass each to action.
+	 * 
+	 * @param action The action for each object T.
+	 */
+	public void forEach(Consumer<? super T> action) {
+		criteria.forEach(action);
+	}
 }
@@ -0,0 +1,47 @@
+package com.jacky.orm;
+
+import java.util.List;
+
+/**
+ * One page of keyset pagination.
+ * 
+ * @param <T> Generic type.
+ */
+public final class Page<T> {
+
+	private final List<T> items;
+	private final String nextCursor;
+
+	Page(List<T> items, String nextCursor) {
+		this.items = items;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Get results of this page.
+	 * 
+	 * @return List of object T.
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * Get cursor token to fetch next page by afterCursor(), or null if this is
+	 * the last page.
+	 * 
+	 * @return Cursor token or null.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Is there a next page.
+	 * 
+	 * @return True if next page may exist.
+	 */
+	public boolean hasNext() {
+		return nextCursor != null;
+	}
+}
@@ -0,0 +1,224 @@
+package com.jacky.orm;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.persistence.NoResultException;
+import javax.persistence.NonUniqueResultException;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Immutable query compiled once from criteria query, e.g.:
+ * 
+ * <code>
+ * static final PreparedQuery&lt;User&gt; BY_EMAIL = db.from(User.class).where("email = ?").prepare();
+ * 
+ * User user = BY_EMAIL.first("bob@example.com");
+ * </code>
+ * 
+ * SQL, constant parameters of limit and the row mapper are resolved when
+ * prepared, so each call only binds arguments of the where clause and
+ * executes. The row mapper is compiled on first execution and reused since the
+ * columns never change. A PreparedQuery is thread-safe.
+ * 
+ * @param <T> Entity type.
+ */
+public final class PreparedQuery<T> {
+
+	static final Object[] NO_LIMIT = new Object[0];
+	static final Object[] FIRST_LIMIT = { 0, 1 };
+	static final Object[] UNIQUE_LIMIT = { 0, 2 };
+
+	final DbTemplate db;
+	final Mapper<T> mapper;
+	final boolean cached;
+	final int whereSize;
+
+	final String listSql;
+	final Object[] listLimit;
+	final String firstSql;
+	final String uniqueSql;
+
+	final ResultSetExtractor<List<T>> extractor;
+
+	// compiled on first execution:
+	volatile RowMapper<T> rowMapper = null;
+
+	PreparedQuery(Criteria<T> criteria) {
+		if (criteria.seekAfter != null) {
+			throw new IllegalStateException("Cannot prepare query with keyset pagination.");
+		}
+		this.db = criteria.db;
+		this.mapper = criteria.mapper;
+		this.cached = criteria.cached;
+		this.whereSize = criteria.where == null ? 0 : countPlaceholders(criteria.where);
+		this.listSql = criteria.buildSql();
+		this.listLimit = limitParams(criteria);
+		// first() and unique() use fixed limit, the caller's criteria is unchanged:
+		Criteria<T> fixed = criteria.copy();
+		fixed.offset = 0;
+		fixed.maxResults = 1;
+		this.firstSql = fixed.buildSql();
+		fixed.maxResults = 2;
+		this.uniqueSql = fixed.buildSql();
+		this.extractor = this::extractData;
+	}
+
+	/**
+	 * Get SQL executed by list().
+	 * 
+	 * @return The SQL.
+	 */
+	public String getSql() {
+		return this.listSql;
+	}
+
+	/**
+	 * Get all results as list.
+	 * 
+	 * @param args Arguments of where clause.
+	 * @return List of object T.
+	 */
+	public List<T> list(Object... args) {
+		return query(this.listSql, bind(args, this.listLimit));
+	}
+
+	/**
+	 * Get first row of the query, or null if no result found.
+	 * 
+	 * @param args Arguments of where clause.
+	 * @return Object T or null.
+	 */
+	public T first(Object... args) {
+		List<T> list = query(this.firstSql, bind(args, FIRST_LIMIT));
+		return list.isEmpty() ? null : list.get(0);
+	}
+
+	/**
+	 * Get unique result of the query. Exception will throw if no result found or
+	 * more than 1 results found.
+	 * 
+	 * @param args Arguments of where clause.
+	 * @return Object T.
+	 * @throws javax.persistence.NoResultException        If result set is empty.
+	 * @throws javax.persistence.NonUniqueResultException If more than 1 results
+	 *                                                    found.
+	 */
+	public T unique(Object... args) {
+		List<T> list = query(this.uniqueSql, bind(args, UNIQUE_LIMIT));
+		if (list.isEmpty()) {
+			throw new NoResultException("Expected unique row but nothing found.");
+		}
+		if (list.size() > 1) {
+			throw new NonUniqueResultException("Expected unique row but more than 1 rows found.");
+		}
+		return list.get(0);
+	}
+
+	/**
+	 * Get all results as list asynchronously. The query runs on the executor of
+	 * DbTemplate, outside the caller's transaction.
+	 * 
+	 * @param args Arguments of where clause.
+	 * @return Future of list of object T.
+	 */
+	public CompletableFuture<List<T>> listAsync(Object... args) {
+		Object[] params = bind(args, this.listLimit);
+		return this.db.executeAsync(() -> query(this.listSql, params));
+	}
+
+	/**
+	 * Get results as stream which reads rows from an open cursor. The stream
+	 * holds a connection and must be closed after use, e.g. by
+	 * try-with-resources.
+	 * 
+	 * @param args Arguments of where clause.
+	 * @return Stream of object T.
+	 */
+	public Stream<T> stream(Object... args) {
+		return new ResultCursor<>(this.db, this.listSql, bind(args, this.listLimit), this.mapper.rowMapper,
+				this.db.fetchSize).stream();
+	}
+
+	/**
+	 * Read results one by one from an open cursor and pass each to action.
+	 * 
+	 * @param action The action for each object T.
+	 * @param args   Arguments of where clause.
+	 */
+	public void forEach(Consumer<? super T> action, Object... args) {
+		try (Stream<T> s = stream(args)) {
+			s.forEach(action);
+		}
+	}
+
+	private List<T> query(String sql, Object[] params) {
+		if (this.cached) {
+			return this.db.executeCachedQuery(this.mapper, sql, params);
+		}
+		return this.db.executeQuery(sql, params, this.extractor);
+	}
+
+	private List<T> extractData(ResultSet rs) throws SQLException {
+		RowMapper<T> rm = this.rowMapper;
+		if (rm == null) {
+			rm = this.mapper.rowMapper.forResultSet(rs);
+			this.rowMapper = rm;
+		}
+		List<T> list = new ArrayList<>();
+		int rowNum = 0;
+		while (rs.next()) {
+			list.add(rm.mapRow(rs, rowNum));
+			rowNum++;
+		}
+		return list;
+	}
+
+	private Object[] bind(Object[] args, Object[] limit) {
+		if (args.length != this.whereSize) {
+			throw new IllegalArgumentException(
+					"Expected " + this.whereSize + " arguments but " + args.length + " given.");
+		}
+		if (limit.length == 0) {
+			// cached query keeps params as key:
+			return this.cached ? args.clone() : args;
+		}
+		Object[] params = new Object[args.length + limit.length];
+		System.arraycopy(args, 0, params, 0, args.length);
+		System.arraycopy(limit, 0, params, args.length, limit.length);
+		return params;
+	}
+
+	private static Object[] limitParams(Criteria<?> criteria) {
+		if (criteria.maxResults > 0 && criteria.offset >= 0) {
+			return new Object[] { criteria.offset, criteria.maxResults };
+		}
+		return NO_LIMIT;
+	}
+
+	// count "?" outside of quoted literals:
+	static int countPlaceholders(String clause) {
+		int n = 0;
+		char quote = 0;
+		for (int i = 0; i < clause.length(); i++) {
+			char ch = clause.charAt(i);
+			if (quote != 0) {
+				if (ch == quote) {
+					quote = 0;
+				}
+			} else if (ch == '\'' || ch == '"') {
+				quote = ch;
+			} else if (ch == '?') {
+				n++;
+			}
+		}
+		return n;
+	}
+}
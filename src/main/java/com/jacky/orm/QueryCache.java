@@ -0,0 +1,101 @@
+package com.jacky.orm;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of criteria query results keyed by SQL and parameters.
+ * 
+ * Each table has a generation number which is increased when the table is
+ * written. A cached result remembers the generation of its table when it was
+ * loaded and is discarded once the generation changed, so invalidating a table
+ * is O(1).
+ */
+final class QueryCache {
+
+	final LruCache<Key, Result> cache;
+
+	// max rows of a result to be cached:
+	final int maxRows;
+
+	// table name -> generation:
+	final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+	QueryCache(int maxEntries, int maxRows) {
+		this.cache = new LruCache<>(maxEntries, 0);
+		this.maxRows = maxRows;
+	}
+
+	long generation(String table) {
+		return this.generations.computeIfAbsent(table.toLowerCase(), (key) -> new AtomicLong()).get();
+	}
+
+	/**
+	 * Get cached rows.
+	 * 
+	 * @return Property values of each row, or null if not cached or stale.
+	 */
+	List<Object[]> get(Key key, String table) {
+		long current = generation(table);
+		Result result = this.cache.get(key, (r) -> r.generation == current);
+		return result == null ? null : result.rows;
+	}
+
+	void put(Key key, String table, List<Object[]> rows, long loadGeneration) {
+		if (rows.size() <= this.maxRows && loadGeneration == generation(table)) {
+			this.cache.put(key, new Result(rows, loadGeneration));
+		}
+	}
+
+	void invalidate(String table) {
+		this.generations.computeIfAbsent(table.toLowerCase(), (key) -> new AtomicLong()).incrementAndGet();
+	}
+
+	CacheStats stats() {
+		return this.cache.stats();
+	}
+
+	static final class Result {
+
+		final List<Object[]> rows;
+		final long generation;
+
+		Result(List<Object[]> rows, long generation) {
+			this.rows = rows;
+			this.generation = generation;
+		}
+	}
+
+	static final class Key {
+
+		final String sql;
+		final Object[] params;
+		final int hash;
+
+		Key(String sql, Object[] params) {
+			this.sql = sql;
+			this.params = params;
+			this.hash = 31 * sql.hashCode() + Arrays.deepHashCode(params);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return hash == other.hash && sql.equals(other.sql) && Arrays.deepEquals(params, other.params);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
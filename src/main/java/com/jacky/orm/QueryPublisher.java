@@ -0,0 +1,144 @@
+package com.jacky.orm;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publish rows of a query to subscribers with backpressure.
+ *
+ * Each subscription opens its own cursor on the first request and reads only
+ * as many rows as requested. Rows are emitted on the thread calling request(),
+ * which may be any thread, so the cursor uses a dedicated connection of the data
+ * source and never joins the transaction of that thread. The cursor is closed
+ * when all rows are emitted, on error, or on cancel().
+ *
+ * @param <T> Entity type.
+ */
+final class QueryPublisher<T> implements Publisher<T> {
+
+	final DbTemplate db;
+	final String sql;
+	final Object[] params;
+	final EntityRowMapper<T> rowMapper;
+
+	QueryPublisher(DbTemplate db, String sql, Object[] params, EntityRowMapper<T> rowMapper) {
+		this.db = db;
+		this.sql = sql;
+		this.params = params;
+		this.rowMapper = rowMapper;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber, "subscriber is null");
+		subscriber.onSubscribe(new QuerySubscription<>(this, subscriber));
+	}
+
+	static final class QuerySubscription<T> implements Subscription {
+
+		final QueryPublisher<T> publisher;
+		final Subscriber<? super T> subscriber;
+
+		final AtomicLong demand = new AtomicLong();
+
+		// number of pending drain() calls, only one thread drains at a time:
+		final AtomicInteger wip = new AtomicInteger();
+
+		volatile boolean cancelled = false;
+		volatile IllegalArgumentException invalidRequest = null;
+		volatile ResultCursor<T> cursor = null;
+
+		// accessed by draining thread only:
+		boolean done = false;
+
+		QuerySubscription(QueryPublisher<T> publisher, Subscriber<? super T> subscriber) {
+			this.publisher = publisher;
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				this.invalidRequest = new IllegalArgumentException("Request must be > 0 but was " + n);
+			} else {
+				long current, next;
+				do {
+					current = this.demand.get();
+					next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				} while (!this.demand.compareAndSet(current, next));
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			this.cancelled = true;
+			ResultCursor<T> c = this.cursor;
+			if (c != null) {
+				// interrupt a blocking fetch in the draining thread:
+				c.cancel();
+			}
+			drain();
+		}
+
+		void drain() {
+			if (this.wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				while (!this.done) {
+					if (this.cancelled) {
+						finish();
+						break;
+					}
+					if (this.invalidRequest != null) {
+						finish();
+						this.subscriber.onError(this.invalidRequest);
+						break;
+					}
+					if (this.demand.get() == 0) {
+						break;
+					}
+					T t;
+					try {
+						if (this.cursor == null) {
+							this.cursor = new ResultCursor<>(publisher.db, publisher.sql, publisher.params,
+									publisher.rowMapper, publisher.db.fetchSize, false);
+						}
+						t = this.cursor.next();
+					} catch (RuntimeException e) {
+						finish();
+						if (!this.cancelled) {
+							this.subscriber.onError(e);
+						}
+						break;
+					}
+					if (t == null) {
+						finish();
+						this.subscriber.onComplete();
+						break;
+					}
+					if (this.demand.get() != Long.MAX_VALUE) {
+						this.demand.decrementAndGet();
+					}
+					this.subscriber.onNext(t);
+				}
+				missed = this.wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void finish() {
+			this.done = true;
+			ResultCursor<T> c = this.cursor;
+			if (c != null) {
+				c.close();
+			}
+		}
+	}
+}
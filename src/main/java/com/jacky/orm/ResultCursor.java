@@ -0,0 +1,177 @@
+package com.jacky.orm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Hold an open result set and read entity one by one.
+ *
+ * The connection is obtained by DataSourceUtils, so it is the transactional
+ * connection if a transaction is active, unless the cursor is opened on a
+ * dedicated connection of the data source. Cursor must be closed after use.
+ *
+ * @param <T> Entity type.
+ */
+final class ResultCursor<T> implements AutoCloseable {
+
+	final DbTemplate db;
+	final String sql;
+	final DataSource dataSource;
+	// false if connection is a dedicated one outside any transaction:
+	final boolean transactional;
+	final Connection connection;
+	final PreparedStatement statement;
+	final ResultSet resultSet;
+	final RowMapper<T> rowMapper;
+
+	// telemetry records rows read and time the cursor was open:
+	final long startNanos = System.nanoTime();
+	boolean failed = false;
+
+	int rowNum = 0;
+	volatile boolean closed = false;
+
+	ResultCursor(DbTemplate db, String sql, Object[] args, EntityRowMapper<T> rowMapper, int fetchSize) {
+		this(db, sql, args, rowMapper, fetchSize, true);
+	}
+
+	ResultCursor(DbTemplate db, String sql, Object[] args, EntityRowMapper<T> rowMapper, int fetchSize,
+			boolean transactional) {
+		this.db = db;
+		this.sql = sql;
+		this.dataSource = db.jdbcTemplate.getDataSource();
+		this.transactional = transactional;
+		this.connection = transactional ? DataSourceUtils.getConnection(this.dataSource)
+				: dedicatedConnection(this.dataSource);
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		boolean opened = false;
+		try {
+			ps = this.connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			for (int i = 0; i < args.length; i++) {
+				Binders.setValue(ps, i + 1, args[i]);
+			}
+			rs = ps.executeQuery();
+			this.rowMapper = rowMapper.forResultSet(rs);
+			opened = true;
+		} catch (SQLException e) {
+			throw db.jdbcTemplate.getExceptionTranslator().translate("ResultCursor", sql, e);
+		} finally {
+			// release connection on any exception, not only SQLException:
+			if (!opened) {
+				JdbcUtils.closeResultSet(rs);
+				JdbcUtils.closeStatement(ps);
+				releaseConnection();
+				db.telemetry.record(sql, this.startNanos, 0, true);
+			}
+		}
+		this.statement = ps;
+		this.resultSet = rs;
+	}
+
+	/**
+	 * Read next entity.
+	 *
+	 * @return Entity object, or null if no more rows.
+	 */
+	T next() {
+		if (this.closed) {
+			return null;
+		}
+		try {
+			if (!this.resultSet.next()) {
+				close();
+				return null;
+			}
+			T t = this.rowMapper.mapRow(this.resultSet, this.rowNum);
+			this.rowNum++;
+			return t;
+		} catch (SQLException e) {
+			this.failed = true;
+			close();
+			throw db.jdbcTemplate.getExceptionTranslator().translate("ResultCursor", sql, e);
+		} catch (RuntimeException e) {
+			this.failed = true;
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Wrap cursor as a sequential stream which closes the cursor when the stream
+	 * is closed.
+	 *
+	 * @return Stream of entity.
+	 */
+	Stream<T> stream() {
+		Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				T t = next();
+				if (t == null) {
+					return false;
+				}
+				action.accept(t);
+				return true;
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(this::close);
+	}
+
+	/**
+	 * Cancel the running statement. Safe to call from another thread while
+	 * next() is blocked, which then fails and closes the cursor.
+	 */
+	void cancel() {
+		if (!this.closed) {
+			try {
+				this.statement.cancel();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		if (!this.closed) {
+			this.closed = true;
+			JdbcUtils.closeResultSet(this.resultSet);
+			JdbcUtils.closeStatement(this.statement);
+			releaseConnection();
+			db.telemetry.record(sql, this.startNanos, this.rowNum, this.failed);
+		}
+	}
+
+	private void releaseConnection() {
+		if (this.transactional) {
+			DataSourceUtils.releaseConnection(this.connection, this.dataSource);
+		} else {
+			JdbcUtils.closeConnection(this.connection);
+		}
+	}
+
+	private static Connection dedicatedConnection(DataSource dataSource) {
+		try {
+			return dataSource.getConnection();
+		} catch (SQLException e) {
+			throw new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection", e);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.jacky.orm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transaction-scoped identity map (first-level cache).
+ * 
+ * A session is bound to the current Spring transaction by DbTemplate and is
+ * discarded when the transaction commits or rolls back. Entities are keyed by
+ * mapper first and then id, so looking up a Long id does not allocate a
+ * composite key. A snapshot of each managed entity is kept for dirty checking.
+ */
+final class Session {
+
+	// mapper -> (id -> entity)
+	final Map<Mapper<?>, Map<Object, Object>> entities = new IdentityHashMap<>();
+
+	// entity -> copy of updatable properties when loaded or last written:
+	final Map<Object, Object[]> snapshots = new IdentityHashMap<>();
+
+	// mappers written in this transaction:
+	final Set<Mapper<?>> written = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	// run after transaction committed:
+	final List<Runnable> afterCommitTasks = new ArrayList<>();
+
+	/**
+	 * Get session bound to current transaction, create and bind a new one if
+	 * necessary.
+	 * 
+	 * @param key Resource key, the DbTemplate.
+	 * @return Session, or null if no transaction synchronization is active.
+	 */
+	static Session current(Object key) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		Session session = (Session) TransactionSynchronizationManager.getResource(key);
+		if (session == null) {
+			final Session newSession = new Session();
+			TransactionSynchronizationManager.bindResource(key, newSession);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void suspend() {
+					TransactionSynchronizationManager.unbindResourceIfPossible(key);
+				}
+
+				@Override
+				public void resume() {
+					TransactionSynchronizationManager.bindResource(key, newSession);
+				}
+
+				@Override
+				public void afterCommit() {
+					for (Runnable task : newSession.afterCommitTasks) {
+						task.run();
+					}
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(key);
+				}
+			});
+			session = newSession;
+		}
+		return session;
+	}
+
+	void afterCommit(Runnable task) {
+		this.afterCommitTasks.add(task);
+	}
+
+	/**
+	 * Mark mapper as written in this transaction.
+	 * 
+	 * @return True if this is the first write of mapper.
+	 */
+	boolean markWritten(Mapper<?> mapper) {
+		return this.written.add(mapper);
+	}
+
+	boolean isWritten(Mapper<?> mapper) {
+		return this.written.contains(mapper);
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> T get(Mapper<T> mapper, Object id) {
+		if (id == null) {
+			return null;
+		}
+		Map<Object, Object> map = this.entities.get(mapper);
+		return map == null ? null : (T) map.get(id);
+	}
+
+	void put(Mapper<?> mapper, Object id, Object bean) {
+		if (id != null) {
+			Object old = this.entities.computeIfAbsent(mapper, (key) -> new HashMap<>()).put(id, bean);
+			if (old != null && old != bean) {
+				this.snapshots.remove(old);
+			}
+			this.snapshots.put(bean, mapper.updatableSnapshot(bean));
+		}
+	}
+
+	void remove(Mapper<?> mapper, Object id) {
+		Map<Object, Object> map = this.entities.get(mapper);
+		if (map != null) {
+			Object old = map.remove(id);
+			if (old != null) {
+				this.snapshots.remove(old);
+			}
+		}
+	}
+
+	/**
+	 * Get snapshot of entity managed by this session.
+	 * 
+	 * @param bean The entity.
+	 * @return Values of updatable properties, or null if bean is not managed.
+	 */
+	Object[] snapshot(Object bean) {
+		return this.snapshots.get(bean);
+	}
+}
@@ -0,0 +1,65 @@
+package com.jacky.orm;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A statement which took longer than the threshold of SlowQueryLog.
+ */
+public final class SlowQuery {
+
+	private final Instant time;
+	private final String sql;
+	private final List<String> parameterTypes;
+	private final long durationNanos;
+	private final String plan;
+
+	SlowQuery(Instant time, String sql, List<String> parameterTypes, long durationNanos, String plan) {
+		this.time = time;
+		this.sql = sql;
+		this.parameterTypes = Collections.unmodifiableList(parameterTypes);
+		this.durationNanos = durationNanos;
+		this.plan = plan;
+	}
+
+	public Instant getTime() {
+		return time;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Get simple class names of bound parameters, "null" for null value.
+	 * 
+	 * @return List of type names, empty if unknown.
+	 */
+	public List<String> getParameterTypes() {
+		return parameterTypes;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	public double getDurationMillis() {
+		return durationNanos / 1_000_000.0;
+	}
+
+	/**
+	 * Get output of EXPLAIN PLAN FOR the statement.
+	 * 
+	 * @return Plan text, or message if explain failed.
+	 */
+	public String getPlan() {
+		return plan;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SlowQuery[time=%s, duration=%.3fms, sql=%s, parameterTypes=%s]", time,
+				getDurationMillis(), sql, parameterTypes);
+	}
+}
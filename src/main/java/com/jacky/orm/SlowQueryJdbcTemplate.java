@@ -0,0 +1,133 @@
+package com.jacky.orm;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ArgumentTypePreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+
+/**
+ * JdbcTemplate which records statements slower than threshold to a
+ * SlowQueryLog, e.g. statements executed by JdbcDaoSupport.
+ * 
+ * Arguments passed to query() and update() are kept in a ThreadLocal while the
+ * statement is executed, so the types of bound parameters can be recorded. The
+ * ThreadLocal is cleared in finally, so a failed statement never leaves its
+ * arguments to the next statement of the thread.
+ */
+public class SlowQueryJdbcTemplate extends JdbcTemplate {
+
+	private final ThreadLocal<Object[]> currentArgs = new ThreadLocal<>();
+
+	private final SlowQueryLog slowQueryLog;
+
+	public SlowQueryJdbcTemplate(DataSource dataSource, SlowQueryLog slowQueryLog) {
+		super(dataSource);
+		this.slowQueryLog = slowQueryLog;
+	}
+
+	public SlowQueryLog getSlowQueryLog() {
+		return this.slowQueryLog;
+	}
+
+	@Override
+	protected PreparedStatementSetter newArgPreparedStatementSetter(Object[] args) {
+		return new ArgSetter(args);
+	}
+
+	@Override
+	protected PreparedStatementSetter newArgTypePreparedStatementSetter(Object[] args, int[] argTypes) {
+		return new ArgTypeSetter(args, argTypes);
+	}
+
+	@Override
+	public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse)
+			throws DataAccessException {
+		this.currentArgs.set(argsOf(pss));
+		try {
+			return super.query(psc, pss, rse);
+		} finally {
+			this.currentArgs.remove();
+		}
+	}
+
+	@Override
+	protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) throws DataAccessException {
+		this.currentArgs.set(argsOf(pss));
+		try {
+			return super.update(psc, pss);
+		} finally {
+			this.currentArgs.remove();
+		}
+	}
+
+	@Override
+	public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action)
+			throws DataAccessException {
+		Object[] args = this.currentArgs.get();
+		// statements executed by action must not see args:
+		this.currentArgs.remove();
+		long start = System.nanoTime();
+		try {
+			return super.execute(psc, action);
+		} finally {
+			record(psc, args, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public <T> T execute(StatementCallback<T> action) throws DataAccessException {
+		long start = System.nanoTime();
+		try {
+			return super.execute(action);
+		} finally {
+			record(action, new Object[0], System.nanoTime() - start);
+		}
+	}
+
+	private void record(Object sqlProvider, Object[] args, long nanos) {
+		if (this.slowQueryLog.isSlow(nanos) && sqlProvider instanceof SqlProvider) {
+			String sql = ((SqlProvider) sqlProvider).getSql();
+			if (sql != null) {
+				this.slowQueryLog.record(sql, args, nanos);
+			}
+		}
+	}
+
+	private static Object[] argsOf(PreparedStatementSetter pss) {
+		if (pss instanceof ArgSetter) {
+			return ((ArgSetter) pss).args;
+		}
+		if (pss instanceof ArgTypeSetter) {
+			return ((ArgTypeSetter) pss).args;
+		}
+		return null;
+	}
+
+	private static final class ArgSetter extends ArgumentPreparedStatementSetter {
+
+		final Object[] args;
+
+		ArgSetter(Object[] args) {
+			super(args);
+			this.args = args;
+		}
+	}
+
+	private static final class ArgTypeSetter extends ArgumentTypePreparedStatementSetter {
+
+		final Object[] args;
+
+		ArgTypeSetter(Object[] args, int[] argTypes) {
+			super(args, argTypes);
+			this.args = args;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package com.jacky.orm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Record statements slower than a threshold.
+ * 
+ * Each slow statement is kept in an in-memory ring buffer and, if a file is
+ * set, appended to a rotating log file. The output of HSQLDB "EXPLAIN PLAN FOR"
+ * is captured once per SQL text and attached to every record of it.
+ *
+ * Records are handed to a background thread, which runs EXPLAIN on its own
+ * pooled connection and writes the file, so the caller is not slowed further.
+ * A record made in a transaction is handed over after the transaction
+ * completes, when the caller's connection is released. Records are discarded
+ * if the background thread falls behind by more than MAX_PENDING records.
+ */
+public class SlowQueryLog {
+
+	static final int MAX_PLANS = 1000;
+
+	static final int MAX_PENDING = 1000;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	// run EXPLAIN, without slow query log itself:
+	private final JdbcTemplate explainTemplate;
+
+	private final long thresholdNanos;
+
+	private final AtomicReferenceArray<SlowQuery> ring;
+	private final AtomicLong sequence = new AtomicLong();
+
+	// SQL -> plan:
+	private final Map<String, String> plans = new ConcurrentHashMap<>();
+
+	// read by worker thread:
+	private volatile Path file = null;
+	private volatile long maxFileBytes = 10 * 1024 * 1024;
+	private volatile int maxBackups = 5;
+
+	// runs EXPLAIN and writes file:
+	private final ThreadPoolExecutor worker;
+	private final AtomicLong discarded = new AtomicLong();
+
+	/**
+	 * Create slow query log.
+	 * 
+	 * @param dataSource      DataSource to run EXPLAIN.
+	 * @param thresholdMillis Statements take longer are recorded.
+	 * @param capacity        Max records kept in memory.
+	 */
+	public SlowQueryLog(DataSource dataSource, long thresholdMillis, int capacity) {
+		if (thresholdMillis < 0) {
+			throw new IllegalArgumentException("thresholdMillis must be >= 0.");
+		}
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be > 0.");
+		}
+		this.explainTemplate = new JdbcTemplate(dataSource);
+		this.thresholdNanos = thresholdMillis * 1_000_000;
+		this.ring = new AtomicReferenceArray<>(capacity);
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("slow-query-log-");
+		threadFactory.setDaemon(true);
+		// discard record if worker falls behind or is closed:
+		this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING),
+				threadFactory, (task, executor) -> this.discarded.incrementAndGet());
+	}
+
+	/**
+	 * Also append records to file. When the file exceeds maxBytes it is renamed
+	 * to file.1, file.1 to file.2 and so on, keeping at most maxBackups files.
+	 * 
+	 * @param file       Log file.
+	 * @param maxBytes   Max size of file before rotation.
+	 * @param maxBackups Max number of rotated files.
+	 */
+	public void setFile(String file, long maxBytes, int maxBackups) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be > 0.");
+		}
+		if (maxBackups < 0) {
+			throw new IllegalArgumentException("maxBackups must be >= 0.");
+		}
+		this.file = file == null ? null : Paths.get(file);
+		this.maxFileBytes = maxBytes;
+		this.maxBackups = maxBackups;
+	}
+
+	boolean isSlow(long nanos) {
+		return nanos >= this.thresholdNanos;
+	}
+
+	/**
+	 * Record statement if it is slow.
+	 * 
+	 * @param sql    The SQL.
+	 * @param params Bound parameters, or null if unknown, e.g. batch or bound
+	 *               from bean.
+	 * @param nanos  Duration in nanoseconds.
+	 */
+	void record(String sql, Object[] params, long nanos) {
+		if (!isSlow(nanos)) {
+			return;
+		}
+		List<String> types;
+		if (params == null) {
+			types = Collections.emptyList();
+		} else {
+			types = new ArrayList<>(params.length);
+			for (Object param : params) {
+				types.add(param == null ? "null" : param.getClass().getSimpleName());
+			}
+		}
+		Instant time = Instant.now();
+		Runnable task = () -> {
+			SlowQuery query = new SlowQuery(time, sql, types, nanos, plan(sql));
+			this.ring.set((int) (this.sequence.getAndIncrement() % this.ring.length()), query);
+			logger.warn("Slow query: {}", query);
+			write(query);
+		};
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// connection of transaction is held until completion:
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					SlowQueryLog.this.worker.execute(task);
+				}
+			});
+		} else {
+			this.worker.execute(task);
+		}
+	}
+
+	/**
+	 * Get number of records discarded because the background thread fell
+	 * behind or the log is closed.
+	 * 
+	 * @return Number of discarded records.
+	 */
+	public long getDiscarded() {
+		return this.discarded.get();
+	}
+
+	/**
+	 * Stop background thread after pending records are processed.
+	 */
+	public void close() {
+		this.worker.shutdown();
+	}
+
+	// wait until records handed over are processed:
+	boolean awaitPending(long timeoutMillis) throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		this.worker.execute(latch::countDown);
+		return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Get recent slow queries kept in memory.
+	 * 
+	 * @return List of slow queries, newest first.
+	 */
+	public List<SlowQuery> getRecent() {
+		long seq = this.sequence.get();
+		int n = (int) Math.min(seq, this.ring.length());
+		List<SlowQuery> list = new ArrayList<>(n);
+		for (long i = seq - 1; i >= seq - n; i--) {
+			SlowQuery query = this.ring.get((int) (i % this.ring.length()));
+			if (query != null) {
+				list.add(query);
+			}
+		}
+		return list;
+	}
+
+	// failure is not cached, e.g. no connection available at the time:
+	private String plan(String sql) {
+		String plan = this.plans.get(sql);
+		if (plan == null) {
+			try {
+				List<String> lines = this.explainTemplate.query("EXPLAIN PLAN FOR " + sql,
+						(rs, rowNum) -> rs.getString(1));
+				plan = String.join("\n", lines);
+			} catch (DataAccessException e) {
+				return "EXPLAIN failed: " + e.getMessage();
+			}
+			if (this.plans.size() < MAX_PLANS) {
+				this.plans.putIfAbsent(sql, plan);
+			}
+		}
+		return plan;
+	}
+
+	// called by worker thread only:
+	private void write(SlowQuery query) {
+		if (this.file == null) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder(256);
+		sb.append(query.getTime()).append(' ').append(String.format("%.3fms", query.getDurationMillis())).append(' ')
+				.append(query.getSql()).append(' ').append(query.getParameterTypes()).append('\n');
+		for (String line : query.getPlan().split("\n")) {
+			sb.append("    ").append(line).append('\n');
+		}
+		byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+		try {
+			if (Files.exists(this.file) && Files.size(this.file) + data.length > this.maxFileBytes) {
+				rotate();
+			}
+			Files.write(this.file, data, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			logger.warn("Cannot write slow query log to " + this.file, e);
+		}
+	}
+
+	private void rotate() throws IOException {
+		if (this.maxBackups == 0) {
+			Files.delete(this.file);
+			return;
+		}
+		Files.deleteIfExists(backup(this.maxBackups));
+		for (int i = this.maxBackups - 1; i >= 1; i--) {
+			if (Files.exists(backup(i))) {
+				Files.move(backup(i), backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		Files.move(this.file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private Path backup(int index) {
+		return this.file.resolveSibling(this.file.getFileName() + "." + index);
+	}
+}
@@ -0,0 +1,43 @@
+package com.jacky.orm;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of generated SQL keyed by query shape.
+ * 
+ * The number of query shapes is bounded by the code, so the cache simply stops
+ * growing when it is full instead of evicting.
+ */
+final class SqlCache {
+
+	final int maxSize;
+	final Map<Object, String> cache = new ConcurrentHashMap<>();
+	final LongAdder hits = new LongAdder();
+	final LongAdder misses = new LongAdder();
+
+	SqlCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	String get(Object key) {
+		String sql = this.cache.get(key);
+		if (sql == null) {
+			this.misses.increment();
+		} else {
+			this.hits.increment();
+		}
+		return sql;
+	}
+
+	void put(Object key, String sql) {
+		if (this.cache.size() < this.maxSize) {
+			this.cache.put(key, sql);
+		}
+	}
+
+	CacheStats stats() {
+		return new CacheStats(this.hits.sum(), this.misses.sum(), 0, this.cache.size());
+	}
+}
@@ -0,0 +1,115 @@
+package com.jacky.orm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Record call count, rows, errors and latency histogram of each distinct SQL.
+ * 
+ * Recording only updates LongAdders of an existing recorder, so it is lock-free
+ * and does not allocate once the statement has been seen. Number of distinct
+ * statements is bounded, others are recorded as OTHER_SQL.
+ */
+final class SqlTelemetry {
+
+	static final String OTHER_SQL = "(other)";
+
+	static final int MAX_STATEMENTS = 1000;
+
+	final Logger logger = LoggerFactory.getLogger(DbTemplate.class);
+
+	final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+
+	// log every n-th statement at DEBUG, 0 = disabled:
+	volatile int sampleEvery = 0;
+	final AtomicLong sampleCounter = new AtomicLong();
+
+	// record statements slower than threshold, null = disabled:
+	volatile SlowQueryLog slowQueryLog = null;
+
+	// record statement and check it against slow query log:
+	void record(String sql, Object[] params, long startNanos, long rows, boolean error) {
+		long nanos = record(sql, startNanos, rows, error);
+		SlowQueryLog log = this.slowQueryLog;
+		if (log != null && log.isSlow(nanos)) {
+			log.record(sql, params, nanos);
+		}
+	}
+
+	// record statement only, e.g. cursor whose time includes reading by caller:
+	long record(String sql, long startNanos, long rows, boolean error) {
+		long nanos = System.nanoTime() - startNanos;
+		Recorder recorder = this.recorders.get(sql);
+		if (recorder == null) {
+			recorder = this.recorders.size() < MAX_STATEMENTS ? this.recorders.computeIfAbsent(sql, Recorder::new)
+					: this.recorders.computeIfAbsent(OTHER_SQL, Recorder::new);
+		}
+		recorder.record(nanos, rows, error);
+		int every = this.sampleEvery;
+		if (every > 0 && this.logger.isDebugEnabled() && this.sampleCounter.incrementAndGet() % every == 0) {
+			this.logger.debug("SQL: {} [rows={}, time={}us, error={}]", sql, rows, nanos / 1000, error);
+		}
+		return nanos;
+	}
+
+	List<StatementStats> snapshot() {
+		List<StatementStats> list = new ArrayList<>(this.recorders.size());
+		for (Recorder recorder : this.recorders.values()) {
+			list.add(recorder.snapshot());
+		}
+		list.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+		return list;
+	}
+
+	void reset() {
+		this.recorders.clear();
+	}
+
+	static final class Recorder {
+
+		final String sql;
+		final LongAdder calls = new LongAdder();
+		final LongAdder rows = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder totalNanos = new LongAdder();
+		final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		final LongAdder[] buckets = new LongAdder[StatementStats.BUCKETS];
+
+		Recorder(String sql) {
+			this.sql = sql;
+			for (int i = 0; i < this.buckets.length; i++) {
+				this.buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos, long rowCount, boolean error) {
+			this.calls.increment();
+			if (rowCount > 0) {
+				this.rows.add(rowCount);
+			}
+			if (error) {
+				this.errors.increment();
+			}
+			this.totalNanos.add(nanos);
+			this.maxNanos.accumulate(nanos);
+			this.buckets[StatementStats.bucketOf(nanos)].increment();
+		}
+
+		StatementStats snapshot() {
+			long[] histogram = new long[this.buckets.length];
+			for (int i = 0; i < histogram.length; i++) {
+				histogram[i] = this.buckets[i].sum();
+			}
+			return new StatementStats(this.sql, this.calls.sum(), this.rows.sum(), this.errors.sum(),
+					this.totalNanos.sum(), this.maxNanos.get(), histogram);
+		}
+	}
+}
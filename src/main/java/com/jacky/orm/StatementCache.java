@@ -0,0 +1,144 @@
+package com.jacky.orm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Bounded cache of PreparedStatement per physical connection.
+ * 
+ * A statement is taken out of the cache by prepare() and put back by release(),
+ * so it is never shared by two callers. Caches of closed connections (e.g.
+ * retired by the pool) are purged when a new connection is seen, and at most
+ * once per second when a statement is released. Statements bypass Spring's connection
+ * proxy and are not tracked by the pool, so the caller must apply statement
+ * settings and transaction timeout on each use.
+ */
+final class StatementCache {
+
+	static final long PURGE_INTERVAL_NANOS = 1_000_000_000L;
+
+	// max statements per connection, 0 = disabled:
+	volatile int maxSize;
+
+	final Map<Connection, Map<String, PreparedStatement>> caches = new ConcurrentHashMap<>();
+
+	// purge closed connections on release not before this time (nanos):
+	volatile long nextPurge = System.nanoTime() + PURGE_INTERVAL_NANOS;
+
+	final LongAdder hits = new LongAdder();
+	final LongAdder misses = new LongAdder();
+	final LongAdder evictions = new LongAdder();
+
+	StatementCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	PreparedStatement prepare(Connection con, String sql) throws SQLException {
+		if (this.maxSize <= 0) {
+			return con.prepareStatement(sql);
+		}
+		// prepare on physical connection, so the pool does not close it when the
+		// connection is returned:
+		Connection target = physicalConnection(con);
+		PreparedStatement ps = getCache(target).remove(sql);
+		if (ps != null && !ps.isClosed()) {
+			this.hits.increment();
+			return ps;
+		}
+		this.misses.increment();
+		return target.prepareStatement(sql);
+	}
+
+	void release(Connection con, String sql, PreparedStatement ps, boolean reusable) throws SQLException {
+		if (this.maxSize <= 0 || !reusable) {
+			JdbcUtils.closeStatement(ps);
+			return;
+		}
+		ps.clearParameters();
+		PreparedStatement old = getCache(physicalConnection(con)).put(sql, ps);
+		if (old != null && old != ps) {
+			JdbcUtils.closeStatement(old);
+		}
+		long now = System.nanoTime();
+		if (now - this.nextPurge >= 0) {
+			this.nextPurge = now + PURGE_INTERVAL_NANOS;
+			purgeClosed();
+		}
+	}
+
+	CacheStats stats() {
+		purgeClosed();
+		long size = 0;
+		for (Map<String, PreparedStatement> cache : this.caches.values()) {
+			size += cache.size();
+		}
+		return new CacheStats(this.hits.sum(), this.misses.sum(), this.evictions.sum(), size);
+	}
+
+	private Map<String, PreparedStatement> getCache(Connection target) {
+		Map<String, PreparedStatement> cache = this.caches.get(target);
+		if (cache == null) {
+			purgeClosed();
+			// a connection is used by one thread at a time, so plain LinkedHashMap is
+			// enough:
+			cache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, false) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+					if (size() > maxSize) {
+						JdbcUtils.closeStatement(eldest.getValue());
+						evictions.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+			this.caches.put(target, cache);
+		}
+		return cache;
+	}
+
+	private void purgeClosed() {
+		Iterator<Map.Entry<Connection, Map<String, PreparedStatement>>> it = this.caches.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Connection, Map<String, PreparedStatement>> entry = it.next();
+			boolean closed;
+			try {
+				closed = entry.getKey().isClosed();
+			} catch (SQLException e) {
+				closed = true;
+			}
+			if (closed) {
+				it.remove();
+				// statements of closed connection are already closed by driver, and
+				// closing again is a no-op:
+				for (PreparedStatement ps : entry.getValue().values()) {
+					JdbcUtils.closeStatement(ps);
+				}
+			}
+		}
+	}
+
+	// unwrap Spring's close-suppressing proxy and pool proxy:
+	private static Connection physicalConnection(Connection con) throws SQLException {
+		if (con instanceof ConnectionProxy) {
+			con = ((ConnectionProxy) con).getTargetConnection();
+		}
+		try {
+			Connection target = con.unwrap(Connection.class);
+			return target == null ? con : target;
+		} catch (SQLException e) {
+			return con;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.jacky.orm;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of telemetry of one SQL statement.
+ * 
+ * Latency histogram has power-of-2 buckets in microseconds: bucket 0 counts
+ * calls under 1us, bucket i counts calls in [2^(i-1), 2^i) us, and the last
+ * bucket counts all slower calls.
+ */
+public final class StatementStats {
+
+	static final int BUCKETS = 24;
+
+	private final String sql;
+	private final long calls;
+	private final long rows;
+	private final long errors;
+	private final long totalNanos;
+	private final long maxNanos;
+	private final long[] histogram;
+
+	StatementStats(String sql, long calls, long rows, long errors, long totalNanos, long maxNanos, long[] histogram) {
+		this.sql = sql;
+		this.calls = calls;
+		this.rows = rows;
+		this.errors = errors;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.histogram = histogram;
+	}
+
+	static int bucketOf(long nanos) {
+		long micros = nanos / 1000;
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+	}
+
+	/**
+	 * Get upper bound of histogram bucket in microseconds.
+	 * 
+	 * @param bucket Index of bucket.
+	 * @return Upper bound, or Long.MAX_VALUE for the last bucket.
+	 */
+	public static long bucketUpperBoundMicros(int bucket) {
+		return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	/**
+	 * Get total rows returned by queries or affected by updates.
+	 * 
+	 * @return Number of rows.
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public double getMeanMillis() {
+		return calls == 0 ? 0 : totalNanos / 1_000_000.0 / calls;
+	}
+
+	/**
+	 * Get counts of latency histogram buckets.
+	 * 
+	 * @return Copy of counts.
+	 */
+	public long[] getHistogram() {
+		return Arrays.copyOf(histogram, histogram.length);
+	}
+
+	/**
+	 * Get upper bound of the bucket containing given percentile of calls.
+	 * 
+	 * @param percentile Percentile between 0 and 100, e.g. 99.
+	 * @return Latency in microseconds, or 0 if no call.
+	 */
+	public long getPercentileMicros(double percentile) {
+		long total = 0;
+		for (long n : histogram) {
+			total += n;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long count = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			count += histogram[i];
+			if (count >= rank) {
+				return Math.min(bucketUpperBoundMicros(i), maxNanos / 1000 + 1);
+			}
+		}
+		return maxNanos / 1000 + 1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("StatementStats[sql=%s, calls=%s, rows=%s, errors=%s, mean=%.3fms, p99<=%sus, max=%.3fms]",
+				sql, calls, rows, errors, getMeanMillis(), getPercentileMicros(99), maxNanos / 1_000_000.0);
+	}
+}
@@ -0,0 +1,28 @@
+package com.jacky.orm;
+
+/**
+ * Number of rows inserted and updated by upsert.
+ */
+public final class UpsertResult {
+
+	private final int inserted;
+	private final int updated;
+
+	UpsertResult(int inserted, int updated) {
+		this.inserted = inserted;
+		this.updated = updated;
+	}
+
+	public int getInserted() {
+		return inserted;
+	}
+
+	public int getUpdated() {
+		return updated;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("UpsertResult[inserted=%s, updated=%s]", inserted, updated);
+	}
+}
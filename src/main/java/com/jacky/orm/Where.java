@@ -2,6 +2,11 @@ package com.jacky.orm;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.reactivestreams.Publisher;
 
 /**
  * select ... from ... WHERE ...
@@ -34,6 +39,28 @@ public final class Where<T> extends CriteriaQuery<T> {
 		return new OrderBy<>(this.criteria, orderBy);
 	}
 
+	/**
+	 * Cache results of this query. Cached results are discarded after any
+	 * DbTemplate write to the same table is committed.
+	 * 
+	 * @return Criteria query object.
+	 */
+	public Where<T> cached() {
+		this.criteria.cached = true;
+		return this;
+	}
+
+	/**
+	 * Compile this query to an immutable PreparedQuery which can be executed
+	 * many times with different arguments of where clause. Arguments passed to
+	 * where() are ignored.
+	 * 
+	 * @return PreparedQuery object.
+	 */
+	public PreparedQuery<T> prepare() {
+		return new PreparedQuery<>(this.criteria);
+	}
+
 	/**
 	 * Get all results as list.
 	 * 
@@ -64,4 +91,105 @@ public final class Where<T> extends CriteriaQuery<T> {
 	public T unique() {
 		return this.criteria.unique();
 	}
+
+	/**
+	 * Get all results as list asynchronously. The query runs on the executor of
+	 * DbTemplate, outside the caller's transaction.
+	 * 
+	 * @return Future of list of object T.
+	 */
+	public CompletableFuture<List<T>> listAsync() {
+		return this.criteria.listAsync();
+	}
+
+	/**
+	 * Get first row of the query asynchronously, or null if no result found.
+	 * 
+	 * @return Future of object T or null.
+	 */
+	public CompletableFuture<T> firstAsync() {
+		return this.criteria.firstAsync();
+	}
+
+	/**
+	 * Get results as stream which reads rows from an open cursor. The stream
+	 * holds a connection and must be closed after use, e.g. by
+	 * try-with-resources.
+	 * 
+	 * @return Stream of object T.
+	 */
+	public Stream<T> stream() {
+		return this.criteria.stream();
+	}
+
+	/**
+	 * Get results as publisher which reads rows from an open cursor only as
+	 * subscriber requests. The cursor is on its own connection outside the
+	 * caller's transaction, and is closed when the subscription completes or is
+	 * cancelled.
+	 * 
+	 * @return Publisher of object T.
+	 */
+	public Publisher<T> publisher() {
+		return this.criteria.publisher();
+	}
+
+	/**
+	 * Read results one by one from an open cursor and pass each to action.
+	 * 
+	 * @param action The action for each object T.
+	 */
+	public void forEach(Consumer<? super T> action) {
+		this.criteria.forEach(action);
+	}
+
+	/**
+	 * Count rows matching the query.
+	 * 
+	 * @return Number of rows.
+	 */
+	public long count() {
+		return this.criteria.count();
+	}
+
+	/**
+	 * Test if any row matches the query.
+	 * 
+	 * @return True if at least one row found.
+	 */
+	public boolean exists() {
+		return this.criteria.exists();
+	}
+
+	/**
+	 * Get min value of property.
+	 * 
+	 * @param <V>      Property type.
+	 * @param property The property name.
+	 * @return Min value, or null if no row found.
+	 */
+	public <V> V min(String property) {
+		return this.criteria.min(property);
+	}
+
+	/**
+	 * Get max value of property.
+	 * 
+	 * @param <V>      Property type.
+	 * @param property The property name.
+	 * @return Max value, or null if no row found.
+	 */
+	public <V> V max(String property) {
+		return this.criteria.max(property);
+	}
+
+	/**
+	 * Get sum of property.
+	 * 
+	 * @param property The property name.
+	 * @return Sum as number, or null if no row found.
+	 */
+	public Number sum(String property) {
+		return this.criteria.sum(property);
+	}
 }
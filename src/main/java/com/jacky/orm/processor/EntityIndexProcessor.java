@@ -0,0 +1,229 @@
+package com.jacky.orm.processor;
+
+import java.beans.Introspector;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generate index of @Entity classes at compile time.
+ * 
+ * The index is written to META-INF/orm/entities.index and read by DbTemplate,
+ * so no classpath scanning and Introspector is needed at startup. Each entity
+ * is a line of "entity, class name, table name, flags" followed by lines of
+ * "property, name, column, getter, setter, flags, length,precision,scale",
+ * separated by tab. Entity flag is cacheable or "-". Property flags are comma
+ * separated id, identity, version, insertable, updatable and unique, or "-".
+ * Properties are found by the same rules of Introspector and sorted by name.
+ *
+ * An incremental build only compiles changed classes, so entities in the
+ * existing index which are not compiled again are kept if they still exist.
+ */
+@SupportedAnnotationTypes("javax.persistence.Entity")
+public class EntityIndexProcessor extends AbstractProcessor {
+
+	// must match EntityIndex.LOCATION:
+	static final String LOCATION = "META-INF/orm/entities.index";
+
+	// class name -> lines of entity:
+	private final Map<String, List<String>> entities = new TreeMap<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(Entity.class)) {
+			if (element.getKind() == ElementKind.CLASS) {
+				TypeElement type = (TypeElement) element;
+				List<String> lines = index(type);
+				if (lines != null) {
+					this.entities.put(type.getQualifiedName().toString(), lines);
+				}
+			}
+		}
+		if (roundEnv.processingOver() && !this.entities.isEmpty()) {
+			mergeExisting();
+			write();
+		}
+		return false;
+	}
+
+	private List<String> index(TypeElement type) {
+		Table table = type.getAnnotation(Table.class);
+		String tableName = table != null && !table.name().isEmpty() ? table.name() : type.getSimpleName().toString();
+		List<String> lines = new ArrayList<>();
+		Cacheable cacheable = type.getAnnotation(Cacheable.class);
+		lines.add("entity\t" + processingEnv.getElementUtils().getBinaryName(type) + "\t" + tableName + "\t"
+				+ (cacheable != null && cacheable.value() ? "cacheable" : "-"));
+		// property name -> accessor, methods of subclass take precedence:
+		Map<String, ExecutableElement> getters = new TreeMap<>();
+		Map<String, ExecutableElement> setters = new LinkedHashMap<>();
+		for (TypeElement t = type; t != null && !t.getQualifiedName().contentEquals("java.lang.Object"); t = superclass(t)) {
+			for (ExecutableElement m : ElementFilter.methodsIn(t.getEnclosedElements())) {
+				if (!m.getModifiers().contains(Modifier.PUBLIC) || m.getModifiers().contains(Modifier.STATIC)) {
+					continue;
+				}
+				String name = m.getSimpleName().toString();
+				TypeMirror returnType = m.getReturnType();
+				if (m.getParameters().isEmpty() && returnType.getKind() != TypeKind.VOID) {
+					if (name.startsWith("get") && name.length() > 3) {
+						getters.putIfAbsent(Introspector.decapitalize(name.substring(3)), m);
+					} else if (name.startsWith("is") && name.length() > 2 && returnType.getKind() == TypeKind.BOOLEAN) {
+						getters.putIfAbsent(Introspector.decapitalize(name.substring(2)), m);
+					}
+				} else if (m.getParameters().size() == 1 && returnType.getKind() == TypeKind.VOID
+						&& name.startsWith("set") && name.length() > 3) {
+					setters.putIfAbsent(Introspector.decapitalize(name.substring(3)), m);
+				}
+			}
+		}
+		for (Map.Entry<String, ExecutableElement> entry : getters.entrySet()) {
+			String prop = entry.getKey();
+			ExecutableElement getter = entry.getValue();
+			if (getter.getAnnotation(Transient.class) != null) {
+				continue;
+			}
+			ExecutableElement setter = setters.get(prop);
+			if (setter == null || !processingEnv.getTypeUtils().isSameType(getter.getReturnType(),
+					setter.getParameters().get(0).asType())) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						"Property " + prop + " is not read/write.", type);
+				return null;
+			}
+			Column col = getter.getAnnotation(Column.class);
+			String column = col == null || col.name().isEmpty() ? prop : col.name();
+			boolean id = getter.getAnnotation(Id.class) != null;
+			GeneratedValue gv = getter.getAnnotation(GeneratedValue.class);
+			boolean identity = id && gv != null && gv.strategy() == GenerationType.IDENTITY;
+			boolean insertable = !identity && (col == null || col.insertable());
+			boolean version = getter.getAnnotation(Version.class) != null;
+			boolean updatable = !id && !version && (col == null || col.updatable());
+			boolean unique = col != null && col.unique();
+			List<String> flags = new ArrayList<>(6);
+			if (id) {
+				flags.add("id");
+			}
+			if (identity) {
+				flags.add("identity");
+			}
+			if (version) {
+				flags.add("version");
+			}
+			if (insertable) {
+				flags.add("insertable");
+			}
+			if (updatable) {
+				flags.add("updatable");
+			}
+			if (unique) {
+				flags.add("unique");
+			}
+			// default values of @Column if absent:
+			String def = col == null ? "255,0,0" : col.length() + "," + col.precision() + "," + col.scale();
+			lines.add("property\t" + prop + "\t" + column + "\t" + getter.getSimpleName() + "\t"
+					+ setter.getSimpleName() + "\t" + (flags.isEmpty() ? "-" : String.join(",", flags)) + "\t" + def);
+		}
+		return lines;
+	}
+
+	private TypeElement superclass(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		return (TypeElement) ((DeclaredType) superclass).asElement();
+	}
+
+	// keep entities of existing index which are not compiled in this build:
+	private void mergeExisting() {
+		List<String> lines = new ArrayList<>();
+		try {
+			FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", LOCATION);
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines.add(line);
+				}
+			}
+		} catch (IOException e) {
+			// no existing index:
+			return;
+		}
+		List<String> entity = null;
+		for (String line : lines) {
+			if (line.startsWith("entity\t")) {
+				String className = line.split("\t")[1];
+				entity = null;
+				if (!this.entities.containsKey(className) && exists(className)) {
+					entity = new ArrayList<>();
+					this.entities.put(className, entity);
+				}
+			}
+			if (entity != null) {
+				entity.add(line);
+			}
+		}
+	}
+
+	// class of binary name still exists and is marked as @Entity:
+	private boolean exists(String binaryName) {
+		TypeElement type = processingEnv.getElementUtils().getTypeElement(binaryName.replace('$', '.'));
+		return type != null && type.getAnnotation(Entity.class) != null;
+	}
+
+	private void write() {
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", LOCATION);
+			try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+				writer.write("# Generated by " + getClass().getName() + "\n");
+				for (List<String> lines : this.entities.values()) {
+					for (String line : lines) {
+						writer.write(line);
+						writer.write('\n');
+					}
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + LOCATION + ": " + e);
+		}
+	}
+}
@@ -2,11 +2,14 @@ package com.jacky.service;
 
 import com.jacky.domain.MybatisUser;
 import com.jacky.mapper.MybatisUserMapper;
+import com.jacky.orm.BatchLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author jacky
@@ -29,6 +32,22 @@ public class MybatisUserService {
         return user;
     }
 
+    /**
+     * 创建一个按id批量加载用户的BatchLoader，在一个请求范围内使用：
+     * 先对每个id调用load()得到Future，再调用dispatch()，用一条IN查询加载全部用户。
+     */
+    public BatchLoader<Long, MybatisUser> createUserLoader() {
+        return new BatchLoader<>((ids) -> {
+            Map<Long, MybatisUser> map = new HashMap<>();
+            if (!ids.isEmpty()) {
+                for (MybatisUser user : userMapper.getByIds(ids)) {
+                    map.put(user.getId(), user);
+                }
+            }
+            return map;
+        }, 256);
+    }
+
     public MybatisUser fetchUserByEmail(String email) {
         return userMapper.getByEmail(email);
     }
@@ -1,7 +1,10 @@
 package com.jacky.service;
 
 import com.jacky.domain.ORMUser;
+import com.jacky.orm.BatchLoader;
 import com.jacky.orm.DbTemplate;
+import com.jacky.orm.Page;
+import com.jacky.orm.UpsertResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,6 +27,10 @@ public class ORMUserService {
         return db.get(ORMUser.class, id);
     }
 
+    public BatchLoader<Object, ORMUser> createUserLoader() {
+        return db.batchLoader(ORMUser.class);
+    }
+
     public ORMUser fetchUserByEmail(String email) {
         return db.from(ORMUser.class).where("email = ?", email).first();
     }
@@ -42,6 +49,19 @@ public class ORMUserService {
         return db.from(ORMUser.class).orderBy("id").limit((pageIndex - 1) * pageSize, pageSize).list();
     }
 
+    public Page<ORMUser> getUsersAfter(String cursor) {
+        int pageSize = 100;
+        return db.from(ORMUser.class).orderBy("id").afterCursor(cursor).limit(pageSize).page();
+    }
+
+    public long getUserCount() {
+        return db.from(ORMUser.class).count();
+    }
+
+    public boolean existsEmail(String email) {
+        return db.from(ORMUser.class).where("email = ?", email).exists();
+    }
+
     public ORMUser login(String email, String password) {
         ORMUser user = fetchUserByEmail(email);
         if (user != null && password.equals(user.getPassword())) {
@@ -60,6 +80,20 @@ public class ORMUserService {
         return user;
     }
 
+    public ORMUser registerOrUpdate(String email, String password, String name) {
+        ORMUser user = new ORMUser();
+        user.setEmail(email);
+        user.setPassword(password);
+        user.setName(name);
+        user.setCreatedAt(System.currentTimeMillis());
+        UpsertResult result = db.upsert(user);
+        if (result.getUpdated() > 0) {
+            // MERGE keeps createdAt of the existing row, so read the stored row:
+            return getUserByEmail(email);
+        }
+        return user;
+    }
+
     public void updateUser(Long id, String name) {
         ORMUser user = getUserById(id);
         user.setName(name);
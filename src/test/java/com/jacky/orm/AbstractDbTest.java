@@ -0,0 +1,63 @@
+package com.jacky.orm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jacky.domain.ORMUser;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Base class of tests which run DbTemplate on a new in-memory database. Override
+ * maxPoolSize(), basePackage() or createTables() to change the default pool of
+ * 2 connections with users table.
+ */
+public abstract class AbstractDbTest {
+
+	HikariDataSource dataSource;
+	JdbcTemplate jdbcTemplate;
+	DbTemplate db;
+	TransactionTemplate tx;
+
+	@Before
+	public void setUpDb() {
+		this.dataSource = TestDb.dataSource(maxPoolSize());
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		createTables(this.jdbcTemplate);
+		this.db = new DbTemplate(this.jdbcTemplate, basePackage());
+		this.tx = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+	}
+
+	@After
+	public void tearDownDb() {
+		this.dataSource.close();
+	}
+
+	int maxPoolSize() {
+		return 2;
+	}
+
+	String basePackage() {
+		return "com.jacky.domain";
+	}
+
+	void createTables(JdbcTemplate jdbcTemplate) {
+		TestDb.createUsers(jdbcTemplate);
+	}
+
+	// insert users with email "user{i}@example.com", name "User{i}" and createdAt i:
+	List<ORMUser> insertUsers(int n) {
+		List<ORMUser> users = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			ORMUser user = TestDb.user("user" + i + "@example.com", "User" + i, i);
+			this.db.insert(user);
+			users.add(user);
+		}
+		return users;
+	}
+}
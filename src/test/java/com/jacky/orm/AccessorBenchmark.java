@@ -0,0 +1,98 @@
+package com.jacky.orm;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jacky.domain.ORMUser;
+
+/**
+ * Compare property access by Accessors (LambdaMetafactory) with Method.invoke,
+ * reading and writing all properties of ORMUser including the inherited id.
+ *
+ * Run by:
+ * 
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.cp -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.cp) org.openjdk.jmh.Main AccessorBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessorBenchmark {
+
+	List<AccessibleProperty> properties;
+	Method[] getters;
+	Method[] setters;
+	Object[] values;
+	ORMUser user;
+
+	@Setup
+	public void setup() throws Exception {
+		this.properties = new Mapper<>(ORMUser.class).allProperties;
+		int n = this.properties.size();
+		this.getters = new Method[n];
+		this.setters = new Method[n];
+		this.user = new ORMUser();
+		this.user.setId(123L);
+		this.user.setEmail("bob@example.com");
+		this.user.setPassword("password");
+		this.user.setName("Bob");
+		this.user.setCreatedAt(1600000000000L);
+		this.values = new Object[n];
+		for (int i = 0; i < n; i++) {
+			AccessibleProperty prop = this.properties.get(i);
+			this.getters[i] = prop.getter;
+			this.setters[i] = prop.setter;
+			this.values[i] = prop.get(this.user);
+		}
+	}
+
+	@Benchmark
+	public void getByAccessors(Blackhole bh) {
+		for (int i = 0; i < this.values.length; i++) {
+			bh.consume(this.properties.get(i).get(this.user));
+		}
+	}
+
+	@Benchmark
+	public void getByReflection(Blackhole bh) throws Exception {
+		for (int i = 0; i < this.values.length; i++) {
+			bh.consume(this.getters[i].invoke(this.user));
+		}
+	}
+
+	@Benchmark
+	public Object setByAccessors() {
+		ORMUser bean = new ORMUser();
+		for (int i = 0; i < this.values.length; i++) {
+			this.properties.get(i).set(bean, this.values[i]);
+		}
+		return bean;
+	}
+
+	@Benchmark
+	public Object setByReflection() throws Exception {
+		ORMUser bean = new ORMUser();
+		for (int i = 0; i < this.values.length; i++) {
+			this.setters[i].invoke(bean, this.values[i]);
+		}
+		return bean;
+	}
+}
@@ -0,0 +1,76 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jacky.domain.ORMUser;
+
+public class AggregateTest extends AbstractDbTest {
+
+	@Before
+	public void setUp() {
+		// createdAt is 0..9:
+		insertUsers(10);
+	}
+
+	@Test
+	public void countsRows() {
+		assertEquals(10, this.db.from(ORMUser.class).count());
+		assertEquals(5, this.db.from(ORMUser.class).where("createdAt >= ?", 5).count());
+		assertEquals(0, this.db.from(ORMUser.class).where("createdAt > ?", 9).count());
+	}
+
+	@Test
+	public void testsExistenceByLimitOne() {
+		assertTrue(this.db.from(ORMUser.class).exists());
+		assertTrue(this.db.from(ORMUser.class).where("email = ?", "user3@example.com").exists());
+		assertFalse(this.db.from(ORMUser.class).where("email = ?", "nobody@example.com").exists());
+		assertTrue(executedSql().contains("SELECT 1 FROM users WHERE email = ? LIMIT 1"));
+	}
+
+	@Test
+	public void getsMinMaxOfPropertyType() {
+		Long min = this.db.from(ORMUser.class).min("createdAt");
+		Long max = this.db.from(ORMUser.class).where("createdAt < ?", 7).max("createdAt");
+		assertEquals(Long.valueOf(0), min);
+		assertEquals(Long.valueOf(6), max);
+		String name = this.db.from(ORMUser.class).max("name");
+		assertEquals("User9", name);
+		assertNull(this.db.from(ORMUser.class).where("createdAt > ?", 9).min("createdAt"));
+	}
+
+	@Test
+	public void sumsProperty() {
+		assertEquals(45L, this.db.from(ORMUser.class).sum("createdAt").longValue());
+		assertEquals(30L, this.db.from(ORMUser.class).where("createdAt >= ?", 6).sum("createdAt").longValue());
+		assertNull(this.db.from(ORMUser.class).where("createdAt > ?", 9).sum("createdAt"));
+	}
+
+	@Test
+	public void resolvesPropertyToColumn() {
+		// property name is case-insensitive and resolved by mapper:
+		assertEquals(Long.valueOf(9), this.db.from(ORMUser.class).max("CreatedAt"));
+		assertTrue(executedSql().contains("SELECT MAX(createdAt) FROM users"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidProperty() {
+		this.db.from(ORMUser.class).max("createdAt; DROP TABLE users");
+	}
+
+	private List<String> executedSql() {
+		List<String> list = new ArrayList<>();
+		for (StatementStats stats : this.db.getSqlStats()) {
+			list.add(stats.getSql());
+		}
+		return list;
+	}
+}
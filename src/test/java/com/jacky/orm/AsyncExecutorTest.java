@@ -0,0 +1,138 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AsyncExecutorTest extends AbstractDbTest {
+
+	@Test
+	public void runsOnCallerThreadWhenQueueIsFull() throws Exception {
+		ThreadPoolExecutor pool = platformPool();
+		CountDownLatch release = new CountDownLatch(1);
+		List<CompletableFuture<String>> futures = blockPool(pool, release);
+		try {
+			String caller = Thread.currentThread().getName();
+			assertEquals(caller, this.db.executeAsync(() -> Thread.currentThread().getName()).get());
+		} finally {
+			release.countDown();
+		}
+		for (CompletableFuture<String> future : futures) {
+			assertTrue(future.get(5, TimeUnit.SECONDS).startsWith("db-async-"));
+		}
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void rejectsInTransactionWhenQueueIsFull() throws Exception {
+		ThreadPoolExecutor pool = platformPool();
+		CountDownLatch release = new CountDownLatch(1);
+		blockPool(pool, release);
+		try {
+			this.tx.execute((status) -> this.db.executeAsync(() -> "in tx"));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void boundedExecutorLimitsRunningAndQueuedTasks() throws Exception {
+		AtomicInteger threads = new AtomicInteger();
+		// starts a thread per task like virtual thread executor:
+		Executor exec = DbTemplate.boundedExecutor((task) -> {
+			threads.incrementAndGet();
+			new Thread(task, "per-task").start();
+		}, 1, 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> {
+			started.countDown();
+			await(release);
+			return Thread.currentThread().getName();
+		}, exec);
+		started.await();
+		CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(),
+				exec);
+		try {
+			// full, so run on caller's thread:
+			String caller = Thread.currentThread().getName();
+			assertEquals(caller, CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), exec).get());
+			assertEquals(2, threads.get());
+			// queued task waits for the running one:
+			assertFalse(queued.isDone());
+		} finally {
+			release.countDown();
+		}
+		assertEquals("per-task", first.get(5, TimeUnit.SECONDS));
+		assertEquals("per-task", queued.get(5, TimeUnit.SECONDS));
+		// permits are released after tasks completed:
+		assertEquals("per-task", CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), exec)
+				.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void boundedExecutorRejectsInTransactionWhenFull() throws Exception {
+		Executor exec = DbTemplate.boundedExecutor((task) -> new Thread(task).start(), 1, 0);
+		CountDownLatch release = new CountDownLatch(1);
+		exec.execute(() -> await(release));
+		try {
+			this.tx.execute((status) -> {
+				exec.execute(() -> {
+				});
+				return null;
+			});
+		} finally {
+			release.countDown();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ThreadPoolExecutor platformPool() {
+		Executor exec = this.db.asyncExecutor();
+		// virtual thread executor on Java 21+ has no queue:
+		assumeTrue(exec instanceof ThreadPoolExecutor);
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) exec;
+		assertEquals(1, pool.getMaximumPoolSize());
+		return pool;
+	}
+
+	// occupy the only thread and fill the queue:
+	private List<CompletableFuture<String>> blockPool(ThreadPoolExecutor pool, CountDownLatch release)
+			throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		futures.add(this.db.executeAsync(() -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return Thread.currentThread().getName();
+		}));
+		started.await();
+		while (pool.getQueue().remainingCapacity() > 0) {
+			futures.add(this.db.executeAsync(() -> Thread.currentThread().getName()));
+		}
+		return futures;
+	}
+}
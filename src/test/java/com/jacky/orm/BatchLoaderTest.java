@@ -0,0 +1,175 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class BatchLoaderTest {
+
+	@Test
+	public void completesFuturesOnError() throws Exception {
+		AssertionError error = new AssertionError("failed");
+		BatchLoader<Integer, String> loader = new BatchLoader<>((keys) -> {
+			throw error;
+		}, 10);
+		CompletableFuture<String> future = loader.load(1);
+		loader.dispatch();
+		assertTrue(future.isCompletedExceptionally());
+		try {
+			future.get();
+			fail("Expected error.");
+		} catch (ExecutionException e) {
+			assertSame(error, e.getCause());
+		}
+	}
+
+	@Test
+	public void completesFuturesOnErrorOfScheduledDispatch() throws Exception {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			BatchLoader<Integer, String> loader = new BatchLoader<>((keys) -> {
+				throw new StackOverflowError();
+			}, 10, scheduler, 10);
+			CompletableFuture<String> future = loader.load(1);
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail("Expected error.");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof StackOverflowError);
+			}
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void treatsNullMapAsEmpty() throws Exception {
+		BatchLoader<Integer, String> loader = new BatchLoader<>((keys) -> null, 10);
+		CompletableFuture<String> future = loader.load(1);
+		loader.dispatch();
+		assertNull(future.get());
+	}
+
+	@Test
+	public void loadsByBatchSize() throws Exception {
+		BatchLoader<Integer, String> loader = new BatchLoader<>(
+				(keys) -> Collections.singletonMap(keys.iterator().next(), "v" + keys.size()), 2);
+		CompletableFuture<String> first = loader.load(1);
+		assertTrue(!first.isDone());
+		loader.load(2);
+		assertEquals("v2", first.get());
+	}
+
+	@Test
+	public void loadsSameKeyOnceForLifetimeOfLoader() throws Exception {
+		List<Collection<Integer>> batches = new ArrayList<>();
+		BatchLoader<Integer, String> loader = new BatchLoader<>((keys) -> {
+			batches.add(new ArrayList<>(keys));
+			return values(keys);
+		}, 10);
+		CompletableFuture<String> first = loader.load(1);
+		assertSame(first, loader.load(1));
+		loader.load(2);
+		loader.dispatch();
+		// loaded again after dispatch:
+		assertSame(first, loader.load(1));
+		loader.load(3);
+		loader.dispatch();
+		assertEquals("v1", first.get());
+		assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3)), batches);
+	}
+
+	@Test
+	public void loadsFailedKeyAgain() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		BatchLoader<Integer, String> loader = new BatchLoader<>((keys) -> {
+			if (calls.incrementAndGet() == 1) {
+				throw new IllegalStateException("failed");
+			}
+			return values(keys);
+		}, 10);
+		CompletableFuture<String> failed = loader.load(1);
+		loader.dispatch();
+		assertTrue(failed.isCompletedExceptionally());
+		CompletableFuture<String> retry = loader.load(1);
+		loader.dispatch();
+		assertEquals("v1", retry.get());
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void splitsDispatchByBatchSize() throws Exception {
+		List<Collection<Integer>> batches = new ArrayList<>();
+		BatchLoader<Integer, String> loader = new BatchLoader<>((keys) -> {
+			batches.add(new ArrayList<>(keys));
+			return values(keys);
+		}, 3);
+		List<CompletableFuture<String>> futures = loader.loadMany(Arrays.asList(1, 2, 1, 3, 4));
+		loader.dispatch();
+		assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4)), batches);
+		assertSame(futures.get(0), futures.get(2));
+		assertEquals("v4", futures.get(4).get());
+	}
+
+	@Test
+	public void scheduledDispatchOfClosedWindowDoesNothing() throws Exception {
+		List<Runnable> tasks = new ArrayList<>();
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1) {
+			@Override
+			public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+				// run by test when the window closes:
+				tasks.add(command);
+				return null;
+			}
+		};
+		try {
+			List<Collection<Integer>> batches = new ArrayList<>();
+			BatchLoader<Integer, String> loader = new BatchLoader<>((keys) -> {
+				batches.add(new ArrayList<>(keys));
+				return values(keys);
+			}, 10, scheduler, 100);
+			loader.load(1);
+			// window is closed by manual dispatch:
+			loader.dispatch();
+			CompletableFuture<String> second = loader.load(2);
+			assertEquals(2, tasks.size());
+			// dispatch scheduled by the first window must not take key of second window:
+			tasks.get(0).run();
+			assertFalse(second.isDone());
+			tasks.get(1).run();
+			assertEquals("v2", second.get());
+			assertEquals(Arrays.asList(Arrays.asList(1), Arrays.asList(2)), batches);
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	static Map<Integer, String> values(Collection<Integer> keys) {
+		Map<Integer, String> map = new HashMap<>();
+		for (Integer key : keys) {
+			map.put(key, "v" + key);
+		}
+		return map;
+	}
+}
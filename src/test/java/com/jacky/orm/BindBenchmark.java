@@ -0,0 +1,91 @@
+package com.jacky.orm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.domain.ORMUser;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Compare binding parameters of insertSQL by typed binders with boxing values
+ * into Object[] and binding them by setObject(). Statements are only bound, not
+ * executed.
+ *
+ * Run with allocation rate by:
+ * 
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.cp -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.cp) org.openjdk.jmh.Main BindBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindBenchmark {
+
+	HikariDataSource dataSource;
+	Connection connection;
+	PreparedStatement ps;
+	Mapper<ORMUser> mapper;
+	List<AccessibleProperty> properties;
+	ORMUser user;
+
+	@Setup
+	public void setup() throws Exception {
+		this.dataSource = TestDb.dataSource(1);
+		this.mapper = new Mapper<>(ORMUser.class);
+		this.properties = this.mapper.insertableProperties;
+		TestDb.createUsers(new JdbcTemplate(this.dataSource));
+		this.connection = this.dataSource.getConnection();
+		this.ps = this.connection.prepareStatement(this.mapper.insertSQL);
+		this.user = new ORMUser();
+		this.user.setEmail("bob@example.com");
+		this.user.setPassword("password");
+		this.user.setName("Bob");
+		// not cached by Long.valueOf():
+		this.user.setCreatedAt(1600000000000L);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		this.ps.close();
+		this.connection.close();
+		this.dataSource.close();
+	}
+
+	@Benchmark
+	public PreparedStatement bindTyped() throws Exception {
+		this.mapper.bindInsert(this.ps, this.user);
+		return this.ps;
+	}
+
+	@Benchmark
+	public PreparedStatement bindObjects() throws Exception {
+		Object[] args = new Object[this.properties.size()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = this.properties.get(i).get(this.user);
+		}
+		for (int i = 0; i < args.length; i++) {
+			this.ps.setObject(i + 1, args[i]);
+		}
+		return this.ps;
+	}
+}
@@ -0,0 +1,31 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jacky.domain.ORMUser;
+
+public class DeleteAllTest extends AbstractDbTest {
+
+	@Test
+	public void returnsNumberOfDeletedRows() {
+		List<ORMUser> users = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			users.add(TestDb.user("user" + i + "@example.com", "User" + i, i));
+		}
+		this.db.insertAll(users);
+		List<Long> ids = new ArrayList<>();
+		// several chunks, the last one padded:
+		for (int i = 0; i < 290; i++) {
+			ids.add(users.get(i).getId());
+		}
+		ids.add(100000L);
+		assertEquals(290, this.db.deleteAll(ORMUser.class, ids));
+		assertEquals(10, this.db.from(ORMUser.class).count());
+		assertEquals(0, this.db.deleteAll(ORMUser.class, ids));
+	}
+}
@@ -0,0 +1,113 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.orm.entity.Document;
+
+public class EntityCacheTest extends AbstractDbTest {
+
+	long id;
+
+	@Override
+	String basePackage() {
+		return "com.jacky.orm.entity";
+	}
+
+	@Override
+	void createTables(JdbcTemplate jdbcTemplate) {
+		TestDb.createDocuments(jdbcTemplate);
+	}
+
+	@Before
+	public void setUp() {
+		this.id = insertDocument("Draft").getId();
+	}
+
+	@Test
+	public void hitReturnsNewBeanNotSharingMutableValues() {
+		Document loaded = this.db.get(Document.class, this.id);
+		// cached values are copied from loaded bean:
+		loaded.getUpdatedAt().setTime(2000_000L);
+		loaded.getData()[0] = 9;
+		Document hit = this.db.get(Document.class, this.id);
+		assertEquals(1, this.db.getEntityCacheStats(Document.class).getHitCount());
+		assertNotSame(loaded, hit);
+		assertEquals(1000_000L, hit.getUpdatedAt().getTime());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, hit.getData());
+		// cached values are copied to each hit:
+		hit.getUpdatedAt().setTime(3000_000L);
+		hit.getData()[1] = 8;
+		Document next = this.db.get(Document.class, this.id);
+		assertEquals(2, this.db.getEntityCacheStats(Document.class).getHitCount());
+		assertEquals(1000_000L, next.getUpdatedAt().getTime());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, next.getData());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		this.db.setEntityCache(1, 0);
+		long other = insertDocument("Other").getId();
+		this.db.get(Document.class, this.id);
+		this.db.get(Document.class, other);
+		this.db.get(Document.class, other);
+		CacheStats stats = this.db.getEntityCacheStats(Document.class);
+		assertEquals(1, stats.getSize());
+		assertEquals(1, stats.getEvictionCount());
+		assertEquals(1, stats.getHitCount());
+		this.db.get(Document.class, this.id);
+		assertEquals(2, this.db.getEntityCacheStats(Document.class).getEvictionCount());
+	}
+
+	@Test
+	public void invalidatedAfterUpdate() {
+		Document doc = this.db.get(Document.class, this.id);
+		doc.setTitle("Updated");
+		this.db.update(doc);
+		assertEquals("Updated", this.db.get(Document.class, this.id).getTitle());
+		this.tx.execute((status) -> {
+			Document d = this.db.get(Document.class, this.id);
+			d.setTitle("Committed");
+			this.db.update(d);
+			return null;
+		});
+		assertEquals("Committed", this.db.get(Document.class, this.id).getTitle());
+	}
+
+	@Test
+	public void invalidatedAfterDelete() {
+		Document doc = this.db.get(Document.class, this.id);
+		this.db.delete(doc);
+		assertNull(this.db.fetch(Document.class, this.id));
+	}
+
+	@Test
+	public void notInvalidatedAfterRollback() {
+		this.db.get(Document.class, this.id);
+		this.tx.execute((status) -> {
+			Document d = this.db.get(Document.class, this.id);
+			d.setTitle("RolledBack");
+			this.db.update(d);
+			status.setRollbackOnly();
+			return null;
+		});
+		assertEquals("Draft", this.db.get(Document.class, this.id).getTitle());
+	}
+
+	private Document insertDocument(String title) {
+		Document doc = new Document();
+		doc.setTitle(title);
+		doc.setUpdatedAt(new Date(1000_000L));
+		doc.setData(new byte[] { 1, 2, 3 });
+		this.db.insert(doc);
+		return doc;
+	}
+}
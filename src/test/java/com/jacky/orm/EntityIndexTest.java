@@ -0,0 +1,57 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jacky.domain.ORMUser;
+import com.jacky.orm.entity.Document;
+
+public class EntityIndexTest extends AbstractDbTest {
+
+	@Test
+	public void indexKeepsColumnMetadata() throws Exception {
+		EntityIndex.Entry entry = entry(ORMUser.class);
+		Mapper<?> indexed = entry.toMapper(ORMUser.class);
+		Mapper<ORMUser> reflected = new Mapper<>(ORMUser.class);
+		assertTrue(indexed.cacheable);
+		assertEquals(reflected.cacheable, indexed.cacheable);
+		assertEquals("email", indexed.defaultUpsertKey().propertyName);
+		assertEquals(reflected.defaultUpsertKey().propertyName, indexed.defaultUpsertKey().propertyName);
+		for (AccessibleProperty prop : reflected.allProperties) {
+			AccessibleProperty other = indexed.allPropertiesMap.get(prop.propertyName.toLowerCase());
+			assertEquals(prop.isUnique(), other.isUnique());
+			assertEquals(prop.length, other.length);
+			assertEquals(prop.precision, other.precision);
+			assertEquals(prop.scale, other.scale);
+		}
+		assertEquals("VARCHAR(100)", Mapper.sqlType(indexed.allPropertiesMap.get("email")));
+	}
+
+	@Test
+	public void buildsMapperOfEntityNotIndexed() throws Exception {
+		// index of main classes has ORMUser but not test entity Document:
+		DbTemplate db = new DbTemplate(this.jdbcTemplate, "com.jacky");
+		assertNotNull(entry(ORMUser.class));
+		assertEquals("documents", db.getMapper(Document.class).tableName);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void rejectsClassOutsideBasePackage() {
+		this.db.getMapper(Document.class);
+	}
+
+	private EntityIndex.Entry entry(Class<?> clazz) throws Exception {
+		List<EntityIndex.Entry> entries = EntityIndex.load(getClass().getClassLoader(), "com.jacky");
+		for (EntityIndex.Entry entry : entries) {
+			if (entry.className.equals(clazz.getName())) {
+				return entry;
+			}
+		}
+		return null;
+	}
+}
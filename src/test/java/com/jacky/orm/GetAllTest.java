@@ -0,0 +1,139 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.persistence.EntityNotFoundException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.domain.ORMUser;
+import com.jacky.orm.entity.Document;
+
+public class GetAllTest extends AbstractDbTest {
+
+	List<Long> ids = new ArrayList<>();
+
+	@Override
+	int maxPoolSize() {
+		return 4;
+	}
+
+	@Override
+	void createTables(JdbcTemplate jdbcTemplate) {
+		super.createTables(jdbcTemplate);
+		TestDb.createDocuments(jdbcTemplate);
+	}
+
+	@Before
+	public void setUp() {
+		for (ORMUser user : insertUsers(300)) {
+			this.ids.add(user.getId());
+		}
+	}
+
+	@Test
+	public void getsAllInOrderOfIdsByFewChunks() {
+		List<Long> reversed = new ArrayList<>(this.ids);
+		Collections.reverse(reversed);
+		List<ORMUser> users = this.db.getAll(ORMUser.class, reversed);
+		assertEquals(reversed, idsOf(users));
+		// 300 ids are loaded by IN chunks of 256 and 64:
+		assertEquals(2, selectInCalls());
+	}
+
+	@Test
+	public void getAllRejectsMissingId() {
+		try {
+			this.db.getAll(ORMUser.class, Arrays.asList(this.ids.get(0), -1L));
+			fail("EntityNotFoundException expected");
+		} catch (EntityNotFoundException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void getAllMapSkipsMissingAndDuplicatedIds() {
+		// Integer ids are normalized to Long:
+		Map<Object, ORMUser> map = this.db.getAllMap(ORMUser.class,
+				Arrays.asList(this.ids.get(2), -1L, this.ids.get(0).intValue(), this.ids.get(2)));
+		assertEquals(Arrays.asList(this.ids.get(2), this.ids.get(0)), new ArrayList<>(map.keySet()));
+		assertEquals("User2", map.get(this.ids.get(2)).getName());
+	}
+
+	@Test
+	public void loadsChunksInParallelOnExecutor() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			this.db.setExecutor(executor);
+			List<ORMUser> users = this.db.getAll(ORMUser.class, this.ids);
+			assertEquals(this.ids, idsOf(users));
+			assertEquals(2, selectInCalls());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void usesInstancesOfSession() {
+		this.tx.execute((status) -> {
+			ORMUser first = this.db.get(ORMUser.class, this.ids.get(0));
+			List<ORMUser> users = this.db.getAll(ORMUser.class, this.ids.subList(0, 3));
+			assertSame(first, users.get(0));
+			assertSame(users.get(1), this.db.get(ORMUser.class, this.ids.get(1)));
+			return null;
+		});
+	}
+
+	@Test
+	public void usesEntityCache() {
+		DbTemplate documents = new DbTemplate(this.jdbcTemplate, "com.jacky.orm.entity");
+		List<Long> docIds = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Document doc = new Document();
+			doc.setTitle("Doc" + i);
+			doc.setUpdatedAt(new Date(i));
+			doc.setData(new byte[] { (byte) i });
+			documents.insert(doc);
+			docIds.add(doc.getId());
+		}
+		documents.get(Document.class, docIds.get(1));
+		List<Document> docs = documents.getAll(Document.class, docIds);
+		assertEquals("Doc1", docs.get(1).getTitle());
+		assertEquals(1, documents.getEntityCacheStats(Document.class).getHitCount());
+		// all are cached now:
+		documents.getAll(Document.class, docIds);
+		assertEquals(4, documents.getEntityCacheStats(Document.class).getHitCount());
+		assertEquals(3, documents.getEntityCacheStats(Document.class).getSize());
+	}
+
+	private long selectInCalls() {
+		long calls = 0;
+		for (StatementStats stats : this.db.getSqlStats()) {
+			if (stats.getSql().contains(" IN (")) {
+				calls += stats.getCalls();
+			}
+		}
+		return calls;
+	}
+
+	private static List<Long> idsOf(List<ORMUser> users) {
+		List<Long> list = new ArrayList<>();
+		for (ORMUser user : users) {
+			list.add(user.getId());
+		}
+		return list;
+	}
+}
@@ -0,0 +1,94 @@
+package com.jacky.orm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.domain.ORMUser;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Compare insertAll() by JDBC batch with calling insert() for each bean, on
+ * in-memory HSQLDB.
+ *
+ * Run by:
+ * 
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.cp -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.cp) org.openjdk.jmh.Main InsertBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark {
+
+	@Param({ "1000" })
+	int rows;
+
+	HikariDataSource dataSource;
+	JdbcTemplate jdbcTemplate;
+	DbTemplate db;
+	long sequence = 0;
+
+	@Setup
+	public void setup() {
+		this.dataSource = TestDb.dataSource(2);
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		TestDb.createUsers(this.jdbcTemplate);
+		this.db = new DbTemplate(this.jdbcTemplate, "com.jacky.domain");
+	}
+
+	@Setup(Level.Iteration)
+	public void truncate() {
+		this.jdbcTemplate.update("TRUNCATE TABLE users");
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.dataSource.close();
+	}
+
+	@Benchmark
+	public List<ORMUser> insertEach() {
+		List<ORMUser> users = users();
+		for (ORMUser user : users) {
+			this.db.insert(user);
+		}
+		return users;
+	}
+
+	@Benchmark
+	public List<ORMUser> insertAll() {
+		List<ORMUser> users = users();
+		this.db.insertAll(users);
+		return users;
+	}
+
+	private List<ORMUser> users() {
+		List<ORMUser> users = new ArrayList<>(this.rows);
+		for (int i = 0; i < this.rows; i++) {
+			long n = this.sequence++;
+			users.add(TestDb.user("user" + n + "@example.com", "User" + n, n));
+		}
+		return users;
+	}
+}
@@ -0,0 +1,135 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.domain.ORMUser;
+
+public class KeysetPaginationTest extends AbstractDbTest {
+
+	List<Long> ids = new ArrayList<>();
+
+	@Override
+	void createTables(JdbcTemplate jdbcTemplate) {
+		// name is nullable to test null sort values:
+		TestDb.createUsers(jdbcTemplate, true);
+	}
+
+	@Before
+	public void setUp() {
+		for (int i = 0; i < 11; i++) {
+			// createdAt has duplicated values, name has nulls:
+			ORMUser user = TestDb.user("user" + i + "@example.com", i % 3 == 0 ? null : "N" + (i % 2), i / 4);
+			this.db.insert(user);
+			this.ids.add(user.getId());
+		}
+	}
+
+	@Test
+	public void pagesByNonUniqueColumnReturnEveryRowOnce() {
+		assertEquals(this.ids, pageAll("createdAt", false));
+	}
+
+	@Test
+	public void pagesByNonUniqueColumnDescReturnEveryRowOnce() {
+		List<Long> expected = new ArrayList<>(this.ids);
+		Collections.reverse(expected);
+		assertEquals(expected, pageAll("createdAt", true));
+	}
+
+	@Test
+	public void pagesByNullableColumnReturnEveryRowOnce() {
+		List<Long> all = new ArrayList<>();
+		for (ORMUser user : this.db.from(ORMUser.class).orderBy("name").orderBy("id").list()) {
+			all.add(user.getId());
+		}
+		assertEquals(all, pageAll("name", false));
+		List<Long> desc = new ArrayList<>();
+		for (ORMUser user : this.db.from(ORMUser.class).orderBy("name").desc().orderBy("id").desc().list()) {
+			desc.add(user.getId());
+		}
+		assertEquals(desc, pageAll("name", true));
+	}
+
+	@Test
+	public void descAfterCursorAppliesToOrderByColumn() {
+		// name has ties and nulls:
+		List<Long> expected = new ArrayList<>();
+		for (ORMUser user : this.db.from(ORMUser.class).orderBy("name").desc().orderBy("id").desc().list()) {
+			expected.add(user.getId());
+		}
+		List<Long> result = new ArrayList<>();
+		String cursor = null;
+		do {
+			Page<ORMUser> page = this.db.from(ORMUser.class).orderBy("name").afterCursor(cursor).desc().limit(2)
+					.page();
+			result.addAll(idsOf(page.getItems()));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		assertEquals(expected, result);
+	}
+
+	@Test
+	public void descAfterValuesAppliesToOrderByColumn() {
+		// rows of createdAt 1 are ids[4..7], so rows after (1, ids[6]) in desc
+		// order are ids[5], ids[4], then rows of createdAt 0:
+		List<ORMUser> page = this.db.from(ORMUser.class).orderBy("createdAt").after(1L, this.ids.get(6)).desc()
+				.limit(3).list();
+		assertEquals(Arrays.asList(this.ids.get(5), this.ids.get(4), this.ids.get(3)), idsOf(page));
+	}
+
+	@Test
+	public void afterRequiresIdValue() {
+		List<ORMUser> page = this.db.from(ORMUser.class).orderBy("createdAt").after(0L, this.ids.get(2)).limit(3)
+				.list();
+		assertEquals(this.ids.subList(3, 6), idsOf(page));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void afterWithoutIdValueIsRejected() {
+		this.db.from(ORMUser.class).orderBy("createdAt").after(0L);
+	}
+
+	@Test
+	public void cursorEncodesNull() {
+		String cursor = KeysetCursor.encode(new Object[] { null, 5L });
+		Mapper<ORMUser> mapper = this.db.getMapper(ORMUser.class);
+		AccessibleProperty[] props = { mapper.allPropertiesMap.get("name"), mapper.id };
+		Object[] values = KeysetCursor.decode(cursor, props);
+		assertNull(values[0]);
+		assertArrayEquals(new Object[] { null, 5L }, values);
+	}
+
+	private List<Long> pageAll(String property, boolean desc) {
+		List<Long> result = new ArrayList<>();
+		String cursor = null;
+		do {
+			OrderBy<ORMUser> orderBy = this.db.from(ORMUser.class).orderBy(property);
+			if (desc) {
+				orderBy = orderBy.desc();
+			}
+			Page<ORMUser> page = orderBy.afterCursor(cursor).limit(2).page();
+			result.addAll(idsOf(page.getItems()));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return result;
+	}
+
+	private static List<Long> idsOf(List<ORMUser> users) {
+		List<Long> list = new ArrayList<>();
+		for (ORMUser user : users) {
+			list.add(user.getId());
+		}
+		return list;
+	}
+}
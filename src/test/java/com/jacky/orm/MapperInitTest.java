@@ -0,0 +1,111 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.orm.DbTemplate.MapperInit;
+import com.jacky.orm.entity.Article;
+import com.jacky.orm.entity.Document;
+import com.jacky.orm.entity.Sample;
+
+public class MapperInitTest extends AbstractDbTest {
+
+	static final String ENTITY_PACKAGE = "com.jacky.orm.entity";
+
+	@Override
+	void createTables(JdbcTemplate jdbcTemplate) {
+		TestDb.createDocuments(jdbcTemplate);
+	}
+
+	@Test
+	public void eagerBuildsAllMappers() {
+		DbTemplate db = new DbTemplate(this.jdbcTemplate, ENTITY_PACKAGE, MapperInit.EAGER);
+		assertAllBuilt(db);
+	}
+
+	@Test
+	public void parallelBuildsAllMappers() {
+		DbTemplate db = new DbTemplate(this.jdbcTemplate, ENTITY_PACKAGE, MapperInit.PARALLEL);
+		assertAllBuilt(db);
+		assertSame(db.classMapping.get(Document.class), db.getMapper(Document.class));
+		assertDocumentIsUsable(db);
+	}
+
+	@Test
+	public void lazyBuildsMapperOnFirstUse() {
+		DbTemplate db = new DbTemplate(this.jdbcTemplate, ENTITY_PACKAGE, MapperInit.LAZY);
+		assertTrue(db.classMapping.isEmpty());
+		assertDocumentIsUsable(db);
+		assertEquals(new HashSet<>(Arrays.asList(Document.class)), db.classMapping.keySet());
+		assertSame(db.getMapper(Document.class), db.getMapper(Document.class));
+	}
+
+	@Test
+	public void lazyPublishesOneMapperToConcurrentCallers() throws Exception {
+		DbTemplate db = new DbTemplate(this.jdbcTemplate, ENTITY_PACKAGE, MapperInit.LAZY);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<CompletableFuture<Mapper<Sample>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						throw new IllegalStateException(e);
+					}
+					return db.getMapper(Sample.class);
+				}, executor));
+			}
+			start.countDown();
+			Mapper<Sample> first = futures.get(0).get(5, TimeUnit.SECONDS);
+			for (CompletableFuture<Mapper<Sample>> future : futures) {
+				assertSame(first, future.get(5, TimeUnit.SECONDS));
+			}
+			assertSame(first, db.classMapping.get(Sample.class));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void lazyRejectsUnregisteredClass() {
+		DbTemplate db = new DbTemplate(this.jdbcTemplate, ENTITY_PACKAGE, MapperInit.LAZY);
+		try {
+			db.getMapper(String.class);
+			fail("RuntimeException expected");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("java.lang.String"));
+		}
+		assertTrue(db.classMapping.isEmpty());
+	}
+
+	private static void assertAllBuilt(DbTemplate db) {
+		assertEquals(new HashSet<>(Arrays.asList(Article.class, Document.class, Sample.class)), db.classMapping.keySet());
+	}
+
+	private static void assertDocumentIsUsable(DbTemplate db) {
+		Document doc = new Document();
+		doc.setTitle("Draft");
+		doc.setUpdatedAt(new Date(1000L));
+		doc.setData(new byte[] { 1 });
+		db.insert(doc);
+		assertEquals("Draft", db.get(Document.class, doc.getId()).getTitle());
+	}
+}
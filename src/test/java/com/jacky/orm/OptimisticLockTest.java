@@ -0,0 +1,149 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.OptimisticLockException;
+
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.orm.entity.Article;
+
+public class OptimisticLockTest extends AbstractDbTest {
+
+	@Override
+	String basePackage() {
+		return "com.jacky.orm.entity";
+	}
+
+	@Override
+	void createTables(JdbcTemplate jdbcTemplate) {
+		TestDb.createArticles(jdbcTemplate);
+	}
+
+	@Test
+	public void insertInitializesVersion() {
+		Article article = insert("Draft");
+		assertEquals(Long.valueOf(0), article.getVersion());
+		assertEquals(0L, versionOf(article));
+		Article preset = new Article();
+		preset.setTitle("Imported");
+		preset.setVersion(7L);
+		this.db.insert(preset);
+		assertEquals(7L, versionOf(preset));
+	}
+
+	@Test
+	public void updateIncreasesVersion() {
+		Article article = insert("Draft");
+		article.setTitle("Review");
+		this.db.update(article);
+		assertEquals(Long.valueOf(1), article.getVersion());
+		article.setTitle("Published");
+		this.db.update(article);
+		assertEquals(Long.valueOf(2), article.getVersion());
+		Article loaded = this.db.get(Article.class, article.getId());
+		assertEquals("Published", loaded.getTitle());
+		assertEquals(Long.valueOf(2), loaded.getVersion());
+	}
+
+	@Test
+	public void updateOfStaleVersionFails() {
+		Article article = insert("Draft");
+		Article stale = this.db.get(Article.class, article.getId());
+		article.setTitle("Review");
+		this.db.update(article);
+		stale.setTitle("Lost");
+		try {
+			this.db.update(stale);
+			fail("OptimisticLockException expected");
+		} catch (OptimisticLockException e) {
+			assertSame(stale, e.getEntity());
+		}
+		assertEquals(Long.valueOf(0), stale.getVersion());
+		Article loaded = this.db.get(Article.class, article.getId());
+		assertEquals("Review", loaded.getTitle());
+		assertEquals(Long.valueOf(1), loaded.getVersion());
+	}
+
+	@Test
+	public void dirtyUpdateOfStaleVersionFailsAndForgetsBean() {
+		Article article = insert("Draft");
+		this.tx.execute((status) -> {
+			Article loaded = this.db.get(Article.class, article.getId());
+			this.jdbcTemplate.update("UPDATE articles SET version = version + 1 WHERE id = ?", article.getId());
+			loaded.setTitle("Lost");
+			try {
+				this.db.update(loaded);
+				fail("OptimisticLockException expected");
+			} catch (OptimisticLockException e) {
+				assertSame(loaded, e.getEntity());
+			}
+			// stale bean is removed from session:
+			Article reloaded = this.db.get(Article.class, article.getId());
+			assertNotSame(loaded, reloaded);
+			assertEquals("Draft", reloaded.getTitle());
+			assertEquals(Long.valueOf(1), reloaded.getVersion());
+			return null;
+		});
+	}
+
+	@Test
+	public void updateAllFailsOnConflictingRow() {
+		List<Article> articles = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			articles.add(insert("Draft" + i));
+		}
+		Article conflicting = articles.get(1);
+		this.jdbcTemplate.update("UPDATE articles SET version = version + 1 WHERE id = ?", conflicting.getId());
+		for (Article article : articles) {
+			article.setTitle("Published");
+		}
+		try {
+			this.db.updateAll(articles);
+			fail("OptimisticLockException expected");
+		} catch (OptimisticLockException e) {
+			assertSame(conflicting, e.getEntity());
+		}
+		// other rows of the batch are updated:
+		assertEquals(Arrays.asList(1L, 0L, 1L), Arrays.asList(articles.get(0).getVersion(),
+				conflicting.getVersion(), articles.get(2).getVersion()));
+		List<String> titles = this.jdbcTemplate.queryForList("SELECT title FROM articles ORDER BY id",
+				String.class);
+		assertEquals(Arrays.asList("Published", "Draft1", "Published"), titles);
+		assertEquals(1L, versionOf(conflicting));
+	}
+
+	@Test
+	public void updateAllIncreasesVersions() {
+		List<Article> articles = Arrays.asList(insert("A"), insert("B"));
+		for (Article article : articles) {
+			article.setTitle(article.getTitle() + "2");
+		}
+		assertArrayEquals(new int[] { 1, 1 }, this.db.updateAll(articles));
+		for (Article article : articles) {
+			assertEquals(Long.valueOf(1), article.getVersion());
+			assertEquals(1L, versionOf(article));
+		}
+	}
+
+	private Article insert(String title) {
+		Article article = new Article();
+		article.setTitle(title);
+		this.db.insert(article);
+		return article;
+	}
+
+	private long versionOf(Article article) {
+		return this.jdbcTemplate.queryForObject("SELECT version FROM articles WHERE id = ?", Long.class,
+				article.getId());
+	}
+}
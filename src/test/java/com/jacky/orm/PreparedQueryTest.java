@@ -0,0 +1,34 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jacky.domain.ORMUser;
+
+public class PreparedQueryTest extends AbstractDbTest {
+
+	@Before
+	public void setUp() {
+		insertUsers(20);
+	}
+
+	@Test
+	public void prepareDoesNotChangeBuilder() {
+		Limit<ORMUser> limit = this.db.from(ORMUser.class).orderBy("createdAt").limit(10, 5);
+		List<ORMUser> before = limit.list();
+		PreparedQuery<ORMUser> query = limit.prepare();
+		List<ORMUser> after = limit.list();
+		assertEquals(5, after.size());
+		assertEquals(before.size(), after.size());
+		for (int i = 0; i < after.size(); i++) {
+			assertEquals(before.get(i).getId(), after.get(i).getId());
+		}
+		assertEquals(10, after.get(0).getCreatedAt());
+		assertEquals(5, query.list().size());
+		assertEquals(0, query.first().getCreatedAt());
+	}
+}
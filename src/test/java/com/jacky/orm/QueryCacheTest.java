@@ -0,0 +1,133 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.orm.entity.Document;
+
+public class QueryCacheTest extends AbstractDbTest {
+
+	long id;
+
+	@Override
+	String basePackage() {
+		return "com.jacky.orm.entity";
+	}
+
+	@Override
+	void createTables(JdbcTemplate jdbcTemplate) {
+		TestDb.createDocuments(jdbcTemplate);
+	}
+
+	@Before
+	public void setUp() {
+		this.id = insertDocument("Draft").getId();
+	}
+
+	@Test
+	public void hitReturnsNewBeansNotSharingMutableValues() {
+		Document loaded = cachedList(this.db).get(0);
+		loaded.getUpdatedAt().setTime(2000_000L);
+		loaded.getData()[0] = 9;
+		Document hit = cachedList(this.db).get(0);
+		assertEquals(1, this.db.getQueryCacheStats().getHitCount());
+		assertEquals(1000_000L, hit.getUpdatedAt().getTime());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, hit.getData());
+		hit.getUpdatedAt().setTime(3000_000L);
+		hit.getData()[1] = 8;
+		Document next = cachedList(this.db).get(0);
+		assertEquals(1000_000L, next.getUpdatedAt().getTime());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, next.getData());
+	}
+
+	@Test
+	public void invalidatedByWriteToTable() {
+		assertEquals(1, cachedList(this.db).size());
+		insertDocument("Other");
+		assertEquals(2, cachedList(this.db).size());
+		Document doc = this.db.get(Document.class, this.id);
+		doc.setTitle("Updated");
+		this.db.update(doc);
+		assertEquals("Updated", cachedList(this.db).get(0).getTitle());
+		assertEquals(0, this.db.getQueryCacheStats().getHitCount());
+		assertEquals("Updated", cachedList(this.db).get(0).getTitle());
+		assertEquals(1, this.db.getQueryCacheStats().getHitCount());
+	}
+
+	@Test
+	public void invalidatedAfterCommitOnly() {
+		cachedList(this.db);
+		this.tx.execute((status) -> {
+			Document doc = this.db.get(Document.class, this.id);
+			doc.setTitle("RolledBack");
+			this.db.update(doc);
+			status.setRollbackOnly();
+			return null;
+		});
+		assertEquals("Draft", cachedList(this.db).get(0).getTitle());
+		assertEquals(1, this.db.getQueryCacheStats().getHitCount());
+	}
+
+	@Test
+	public void bypassedAfterSessionWroteTable() {
+		cachedList(this.db);
+		this.tx.execute((status) -> {
+			Document doc = this.db.get(Document.class, this.id);
+			doc.setTitle("Uncommitted");
+			this.db.update(doc);
+			// sees its own write, not the cached result:
+			assertEquals("Uncommitted", cachedList(this.db).get(0).getTitle());
+			status.setRollbackOnly();
+			return null;
+		});
+		// uncommitted result was not cached:
+		assertEquals("Draft", cachedList(this.db).get(0).getTitle());
+	}
+
+	@Test
+	public void resultReadBeforeConcurrentCommitIsNotCached() {
+		AtomicBoolean racing = new AtomicBoolean();
+		DbTemplate[] holder = new DbTemplate[1];
+		JdbcTemplate racingTemplate = new JdbcTemplate(this.dataSource) {
+			@Override
+			public <T> T execute(ConnectionCallback<T> action) {
+				T result = super.execute(action);
+				if (racing.getAndSet(false)) {
+					// another transaction commits after rows were read but before the
+					// result is cached:
+					Document doc = holder[0].get(Document.class, QueryCacheTest.this.id);
+					doc.setTitle("Committed");
+					holder[0].update(doc);
+				}
+				return result;
+			}
+		};
+		DbTemplate db = new DbTemplate(racingTemplate, basePackage());
+		holder[0] = db;
+		racing.set(true);
+		assertEquals("Draft", cachedList(db).get(0).getTitle());
+		assertEquals("Committed", cachedList(db).get(0).getTitle());
+	}
+
+	private List<Document> cachedList(DbTemplate db) {
+		return db.from(Document.class).orderBy("id").cached().list();
+	}
+
+	private Document insertDocument(String title) {
+		Document doc = new Document();
+		doc.setTitle(title);
+		doc.setUpdatedAt(new Date(1000_000L));
+		doc.setData(new byte[] { 1, 2, 3 });
+		this.db.insert(doc);
+		return doc;
+	}
+}
@@ -0,0 +1,139 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.dao.DataAccessException;
+
+import com.jacky.domain.ORMUser;
+
+public class QueryPublisherTest extends AbstractDbTest {
+
+	@Before
+	public void setUp() {
+		insertUsers(10);
+	}
+
+	@Test
+	public void emitsOnlyRequestedRows() {
+		TestSubscriber subscriber = subscribe();
+		assertEquals(0, subscriber.items.size());
+		subscriber.subscription.request(3);
+		assertEquals(3, subscriber.items.size());
+		assertEquals("User0", subscriber.items.get(0).getName());
+		assertFalse(subscriber.completed);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertEquals(10, subscriber.items.size());
+		assertEquals("User9", subscriber.items.get(9).getName());
+		assertTrue(subscriber.completed);
+		assertNull(subscriber.error);
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void completesEmptyResult() {
+		TestSubscriber subscriber = new TestSubscriber();
+		this.db.from(ORMUser.class).where("createdAt > ?", 100).publisher().subscribe(subscriber);
+		subscriber.subscription.request(1);
+		assertEquals(0, subscriber.items.size());
+		assertTrue(subscriber.completed);
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void stopsOnCancel() {
+		TestSubscriber subscriber = subscribe();
+		subscriber.subscription.request(2);
+		assertEquals(1, activeConnections());
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(2);
+		assertEquals(2, subscriber.items.size());
+		assertFalse(subscriber.completed);
+		assertNull(subscriber.error);
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void signalsErrorOfInvalidRequest() {
+		TestSubscriber subscriber = subscribe();
+		subscriber.subscription.request(1);
+		subscriber.subscription.request(0);
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertEquals(1, subscriber.items.size());
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void signalsErrorOfQuery() {
+		Mapper<ORMUser> mapper = this.db.getMapper(ORMUser.class);
+		TestSubscriber subscriber = new TestSubscriber();
+		new QueryPublisher<>(this.db, "SELECT * FROM missing", new Object[0], mapper.rowMapper).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		assertTrue(subscriber.error instanceof DataAccessException);
+		assertFalse(subscriber.completed);
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void usesOwnConnectionOutsideTransaction() {
+		this.tx.execute((status) -> {
+			// bind connection to transaction:
+			this.db.from(ORMUser.class).count();
+			assertEquals(1, activeConnections());
+			TestSubscriber subscriber = subscribe();
+			subscriber.subscription.request(1);
+			assertEquals(2, activeConnections());
+			subscriber.subscription.cancel();
+			assertEquals(1, activeConnections());
+			return null;
+		});
+		assertEquals(0, activeConnections());
+	}
+
+	private TestSubscriber subscribe() {
+		TestSubscriber subscriber = new TestSubscriber();
+		this.db.from(ORMUser.class).orderBy("id").publisher().subscribe(subscriber);
+		return subscriber;
+	}
+
+	int activeConnections() {
+		return this.dataSource.getHikariPoolMXBean().getActiveConnections();
+	}
+
+	static class TestSubscriber implements Subscriber<ORMUser> {
+
+		Subscription subscription;
+		final List<ORMUser> items = new ArrayList<>();
+		Throwable error;
+		boolean completed;
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			this.subscription = s;
+		}
+
+		@Override
+		public void onNext(ORMUser user) {
+			this.items.add(user);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			this.error = t;
+		}
+
+		@Override
+		public void onComplete() {
+			this.completed = true;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jacky.domain.ORMUser;
+
+public class ResultCursorTest extends AbstractDbTest {
+
+	@Before
+	public void setUp() {
+		insertUsers(10);
+	}
+
+	@Test
+	public void streamsAllRowsAndReleasesConnection() {
+		try (Stream<ORMUser> s = this.db.from(ORMUser.class).orderBy("id").stream()) {
+			List<String> names = s.map(ORMUser::getName).collect(Collectors.toList());
+			assertEquals(10, names.size());
+			assertEquals("User0", names.get(0));
+			assertEquals("User9", names.get(9));
+		}
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void releasesConnectionOnEarlyClose() {
+		Stream<ORMUser> s = this.db.from(ORMUser.class).orderBy("id").stream();
+		assertEquals(3, s.limit(3).count());
+		assertEquals(1, activeConnections());
+		s.close();
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void runsOnCloseHandlers() {
+		AtomicBoolean handled = new AtomicBoolean();
+		try (Stream<ORMUser> s = this.db.from(ORMUser.class).stream().onClose(() -> handled.set(true))) {
+			s.findFirst();
+		}
+		assertTrue(handled.get());
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void releasesConnectionIfActionFails() {
+		try {
+			this.db.from(ORMUser.class).forEach((user) -> {
+				throw new IllegalStateException("failed");
+			});
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		assertEquals(0, activeConnections());
+	}
+
+	@Test
+	public void releasesConnectionOnRuntimeExceptionWhenOpening() {
+		Mapper<ORMUser> mapper = this.db.getMapper(ORMUser.class);
+		try {
+			// null args fails after connection is obtained:
+			new ResultCursor<>(this.db, mapper.selectSQL, null, mapper.rowMapper, 10);
+			fail("NullPointerException expected");
+		} catch (NullPointerException e) {
+			// expected
+		}
+		assertEquals(0, activeConnections());
+	}
+
+	int activeConnections() {
+		return this.dataSource.getHikariPoolMXBean().getActiveConnections();
+	}
+}
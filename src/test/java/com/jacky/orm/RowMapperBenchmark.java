@@ -0,0 +1,107 @@
+package com.jacky.orm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import com.jacky.orm.entity.Sample;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Compare mapping 100 rows of all column types by EntityRowMapper with the
+ * same mapper reading every column boxed, and with BeanPropertyRowMapper.
+ *
+ * Run with allocation rate by:
+ * 
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.cp -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.cp) org.openjdk.jmh.Main RowMapperBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMapperBenchmark {
+
+	static final String SQL = "SELECT * FROM samples";
+
+	HikariDataSource dataSource;
+	JdbcTemplate jdbcTemplate;
+	Mapper<Sample> mapper;
+	ResultSetExtractor<List<Sample>> boxed;
+	BeanPropertyRowMapper<Sample> beanPropertyRowMapper;
+
+	@Setup
+	public void setup() throws Exception {
+		this.dataSource = TestDb.dataSource(1);
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		TestDb.createSamples(this.jdbcTemplate);
+		this.mapper = new Mapper<>(Sample.class);
+		for (int i = 0; i < 100; i++) {
+			this.jdbcTemplate.update("INSERT INTO samples (longValue, intValue, boolValue, doubleValue, "
+					+ "longObject, intObject, text) VALUES (?, ?, ?, ?, ?, ?, ?)", 1600000000000L + i, 1000 + i,
+					i % 2 == 0, i * 0.5, 2000L + i, 3000 + i, "text" + i);
+		}
+		// all columns read by columnReader() then set by boxed setter, as before
+		// primitive setters:
+		List<AccessibleProperty> props = this.mapper.allProperties;
+		EntityRowMapper.ColumnReader[] readers = new EntityRowMapper.ColumnReader[props.size()];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = EntityRowMapper.columnReader(props.get(i).propertyType);
+		}
+		this.boxed = (rs) -> {
+			int[] indexes = new int[readers.length];
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = rs.findColumn(props.get(i).columnName);
+			}
+			List<Sample> list = new ArrayList<>();
+			while (rs.next()) {
+				Sample bean = new Sample();
+				for (int i = 0; i < readers.length; i++) {
+					props.get(i).set(bean, readers[i].read(rs, indexes[i]));
+				}
+				list.add(bean);
+			}
+			return list;
+		};
+		this.beanPropertyRowMapper = BeanPropertyRowMapper.newInstance(Sample.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.dataSource.close();
+	}
+
+	@Benchmark
+	public List<Sample> entityRowMapper() {
+		return this.jdbcTemplate.query(SQL, this.mapper.rowMapper);
+	}
+
+	@Benchmark
+	public List<Sample> boxedReaders() {
+		return this.jdbcTemplate.query(SQL, this.boxed);
+	}
+
+	@Benchmark
+	public List<Sample> beanPropertyRowMapper() {
+		return this.jdbcTemplate.query(SQL, this.beanPropertyRowMapper);
+	}
+}
@@ -0,0 +1,97 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.orm.entity.Sample;
+
+public class RowMappingTest extends AbstractDbTest {
+
+	Mapper<Sample> mapper;
+
+	@Override
+	String basePackage() {
+		return "com.jacky.orm.entity";
+	}
+
+	@Override
+	void createTables(JdbcTemplate jdbcTemplate) {
+		TestDb.createSamples(jdbcTemplate);
+	}
+
+	@Before
+	public void setUp() {
+		this.mapper = this.db.getMapper(Sample.class);
+		Sample full = new Sample();
+		full.setLongValue(Long.MAX_VALUE);
+		full.setLongObject(-1L);
+		full.setIntValue(Integer.MIN_VALUE);
+		full.setIntObject(42);
+		full.setBoolValue(true);
+		full.setBoolObject(false);
+		full.setDoubleValue(1.5);
+		full.setDoubleObject(-0.25);
+		full.setText("text");
+		full.setAmount(new BigDecimal("12.34"));
+		full.setCreatedAt(new Date(1600000000000L));
+		full.setData(new byte[] { 1, 2, 3 });
+		this.db.insert(full);
+		// all nullable columns are null:
+		this.db.insert(new Sample());
+	}
+
+	@Test
+	public void mapsAllColumnsAsBeanPropertyRowMapper() {
+		String sql = "SELECT * FROM samples ORDER BY id";
+		assertSameRows(this.jdbcTemplate.query(sql, BeanPropertyRowMapper.newInstance(Sample.class)),
+				this.jdbcTemplate.query(sql, this.mapper.rowMapper));
+	}
+
+	@Test
+	public void mapsProjectionAsBeanPropertyRowMapper() {
+		String sql = "SELECT doubleValue, text, intObject, boolValue FROM samples ORDER BY id";
+		List<Sample> list = this.jdbcTemplate.query(sql, this.mapper.rowMapper);
+		assertSameRows(this.jdbcTemplate.query(sql, BeanPropertyRowMapper.newInstance(Sample.class)), list);
+		assertEquals(0L, list.get(0).getLongValue());
+		assertEquals(null, list.get(0).getAmount());
+	}
+
+	@Test
+	public void mapsByCriteria() {
+		List<Sample> list = this.db.select("longValue", "boolObject").from(Sample.class).orderBy("id").list();
+		assertEquals(Long.MAX_VALUE, list.get(0).getLongValue());
+		assertEquals(Boolean.FALSE, list.get(0).getBoolObject());
+		assertEquals(null, list.get(1).getBoolObject());
+		assertEquals(null, list.get(0).getText());
+	}
+
+	static void assertSameRows(List<Sample> expected, List<Sample> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Sample e = expected.get(i);
+			Sample a = actual.get(i);
+			assertEquals(e.getId(), a.getId());
+			assertEquals(e.getLongValue(), a.getLongValue());
+			assertEquals(e.getLongObject(), a.getLongObject());
+			assertEquals(e.getIntValue(), a.getIntValue());
+			assertEquals(e.getIntObject(), a.getIntObject());
+			assertEquals(e.isBoolValue(), a.isBoolValue());
+			assertEquals(e.getBoolObject(), a.getBoolObject());
+			assertEquals(e.getDoubleValue(), a.getDoubleValue(), 0.0);
+			assertEquals(e.getDoubleObject(), a.getDoubleObject());
+			assertEquals(e.getText(), a.getText());
+			assertEquals(e.getAmount(), a.getAmount());
+			assertEquals(e.getCreatedAt(), a.getCreatedAt());
+			assertArrayEquals(e.getData(), a.getData());
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jacky.domain.ORMUser;
+
+public class ScanTest extends AbstractDbTest {
+
+	@Before
+	public void setUp() {
+		// default async executor has 1 thread:
+		insertUsers(100);
+	}
+
+	@Test
+	public void scansPartitionsInIdOrder() {
+		assertIdOrder(this.db.scan(ORMUser.class, 4, Collectors.toList()));
+	}
+
+	@Test(timeout = 5000)
+	public void scansInAsyncQueries() throws Exception {
+		Supplier<List<ORMUser>> scan = () -> this.db.scan(ORMUser.class, 4, Collectors.toList());
+		List<List<ORMUser>> results = this.db.executeAll(Arrays.asList(scan, scan)).get(5, TimeUnit.SECONDS);
+		assertEquals(2, results.size());
+		for (List<ORMUser> users : results) {
+			assertIdOrder(users);
+		}
+	}
+
+	@Test
+	public void splitsExtremeBoundsWithoutOverflow() {
+		assertRanges(Long.MIN_VALUE, Long.MAX_VALUE, 1);
+		assertRanges(Long.MIN_VALUE, Long.MAX_VALUE, 4);
+		assertRanges(Long.MIN_VALUE, Long.MAX_VALUE, 7);
+		assertRanges(Long.MAX_VALUE - 10, Long.MAX_VALUE, 4);
+		assertRanges(Long.MIN_VALUE, Long.MIN_VALUE + 2, 4);
+		assertRanges(-100, -1, 3);
+		assertRanges(-5, 5, 11);
+		assertRanges(42, 42, 4);
+		assertEquals(4, DbTemplate.idRanges(Long.MIN_VALUE, Long.MAX_VALUE, 4).size());
+		assertEquals(3, DbTemplate.idRanges(Long.MIN_VALUE, Long.MIN_VALUE + 2, 4).size());
+	}
+
+	@Test(timeout = 5000)
+	public void scansNegativeAndExtremeIds() {
+		this.jdbcTemplate.update("DELETE FROM users");
+		long[] ids = { Long.MIN_VALUE, -5, 0, Long.MAX_VALUE - 1, Long.MAX_VALUE };
+		for (long id : ids) {
+			this.jdbcTemplate.update("INSERT INTO users (id, email, password, name, createdAt) VALUES (?, ?, ?, ?, ?)",
+					id, "user" + id + "@example.com", "password", "User" + id, 0L);
+		}
+		List<ORMUser> users = this.db.scan(ORMUser.class, 3, Collectors.toList());
+		assertEquals(ids.length, users.size());
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(ids[i], users.get(i).getId().longValue());
+		}
+	}
+
+	// ranges are contiguous, cover [lo, hi] and are at most partitions:
+	private static void assertRanges(long lo, long hi, int partitions) {
+		List<long[]> ranges = DbTemplate.idRanges(lo, hi, partitions);
+		assertTrue(ranges.size() >= 1 && ranges.size() <= partitions);
+		assertEquals(lo, ranges.get(0)[0]);
+		assertEquals(hi, ranges.get(ranges.size() - 1)[1]);
+		for (int i = 0; i < ranges.size(); i++) {
+			long[] range = ranges.get(i);
+			assertTrue(range[0] <= range[1]);
+			if (i > 0) {
+				assertEquals(ranges.get(i - 1)[1] + 1, range[0]);
+			}
+		}
+	}
+
+	private void assertIdOrder(List<ORMUser> users) {
+		assertEquals(100, users.size());
+		for (int i = 1; i < users.size(); i++) {
+			assertEquals(users.get(i - 1).getId() + 1, users.get(i).getId().longValue());
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.orm.entity.Document;
+
+public class SessionSnapshotTest extends AbstractDbTest {
+
+	long id;
+
+	@Override
+	String basePackage() {
+		return "com.jacky.orm.entity";
+	}
+
+	@Override
+	void createTables(JdbcTemplate jdbcTemplate) {
+		TestDb.createDocuments(jdbcTemplate);
+	}
+
+	@Before
+	public void setUp() {
+		Document doc = new Document();
+		doc.setTitle("Draft");
+		doc.setUpdatedAt(new Date(1000_000L));
+		doc.setData(new byte[] { 1, 2, 3 });
+		this.db.insert(doc);
+		this.id = doc.getId();
+	}
+
+	@Test
+	public void detectsDateChangedInPlace() {
+		this.tx.execute((status) -> {
+			Document doc = this.db.get(Document.class, this.id);
+			doc.getUpdatedAt().setTime(2000_000L);
+			this.db.update(doc);
+			return null;
+		});
+		assertEquals(2000_000L, this.db.get(Document.class, this.id).getUpdatedAt().getTime());
+	}
+
+	@Test
+	public void detectsArrayChangedInPlace() {
+		this.tx.execute((status) -> {
+			Document doc = this.db.get(Document.class, this.id);
+			Session session = Session.current(this.db);
+			doc.getData()[0] = 9;
+			this.db.update(doc);
+			// snapshot is refreshed after update, and not shared with bean:
+			assertArrayEquals(new byte[] { 9, 2, 3 }, (byte[]) session.snapshot(doc)[0]);
+			doc.getData()[1] = 8;
+			assertArrayEquals(new byte[] { 9, 2, 3 }, (byte[]) session.snapshot(doc)[0]);
+			this.db.update(doc);
+			assertArrayEquals(new byte[] { 9, 8, 3 }, (byte[]) session.snapshot(doc)[0]);
+			return null;
+		});
+		assertArrayEquals(new byte[] { 9, 8, 3 }, this.db.get(Document.class, this.id).getData());
+	}
+
+	@Test
+	public void skipsUnchangedValues() {
+		this.tx.execute((status) -> {
+			Document doc = this.db.get(Document.class, this.id);
+			doc.setUpdatedAt(new Date(doc.getUpdatedAt().getTime()));
+			doc.setData(doc.getData().clone());
+			Session session = Session.current(this.db);
+			Object[] snapshot = session.snapshot(doc);
+			this.db.update(doc);
+			// no UPDATE executed, snapshot is not replaced:
+			assertEquals(snapshot, session.snapshot(doc));
+			return null;
+		});
+	}
+}
@@ -0,0 +1,97 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jacky.domain.ORMUser;
+
+public class SessionTest extends AbstractDbTest {
+
+	long id;
+
+	@Before
+	public void setUp() {
+		this.id = insertUsers(1).get(0).getId();
+	}
+
+	@Test
+	public void getReturnsSameInstanceWithinTransaction() {
+		this.tx.execute((status) -> {
+			ORMUser user = this.db.get(ORMUser.class, this.id);
+			assertSame(user, this.db.get(ORMUser.class, this.id));
+			assertSame(user, this.db.fetch(ORMUser.class, this.id));
+			return null;
+		});
+		assertNotSame(this.db.get(ORMUser.class, this.id), this.db.get(ORMUser.class, this.id));
+	}
+
+	@Test
+	public void insertAndDeleteKeepSessionConsistent() {
+		this.tx.execute((status) -> {
+			ORMUser user = TestDb.user("new@example.com", "New", 1L);
+			this.db.insert(user);
+			assertSame(user, this.db.get(ORMUser.class, user.getId()));
+			this.db.delete(user);
+			assertNull(this.db.fetch(ORMUser.class, user.getId()));
+			return null;
+		});
+	}
+
+	@Test
+	public void sessionIsClearedOnCommit() {
+		ORMUser first = this.tx.execute((status) -> {
+			assertNotNull(Session.current(this.db));
+			return this.db.get(ORMUser.class, this.id);
+		});
+		assertNull(TransactionSynchronizationManager.getResource(this.db));
+		this.tx.execute((status) -> {
+			assertNotSame(first, this.db.get(ORMUser.class, this.id));
+			return null;
+		});
+	}
+
+	@Test
+	public void sessionIsClearedOnRollback() {
+		ORMUser first = this.tx.execute((status) -> {
+			status.setRollbackOnly();
+			return this.db.get(ORMUser.class, this.id);
+		});
+		assertNull(TransactionSynchronizationManager.getResource(this.db));
+		this.tx.execute((status) -> {
+			assertNotSame(first, this.db.get(ORMUser.class, this.id));
+			return null;
+		});
+	}
+
+	@Test
+	public void requiresNewSuspendsAndResumesSession() {
+		TransactionTemplate requiresNew = new TransactionTemplate(this.tx.getTransactionManager());
+		requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.tx.execute((status) -> {
+			ORMUser outer = this.db.get(ORMUser.class, this.id);
+			Session outerSession = Session.current(this.db);
+			requiresNew.execute((innerStatus) -> {
+				// outer session is unbound while suspended:
+				assertNull(TransactionSynchronizationManager.getResource(this.db));
+				ORMUser inner = this.db.get(ORMUser.class, this.id);
+				assertNotSame(outer, inner);
+				assertNotSame(outerSession, Session.current(this.db));
+				assertSame(inner, this.db.get(ORMUser.class, this.id));
+				return null;
+			});
+			// outer session is bound again after resumed:
+			assertSame(outerSession, TransactionSynchronizationManager.getResource(this.db));
+			assertSame(outer, this.db.get(ORMUser.class, this.id));
+			return null;
+		});
+		assertNull(TransactionSynchronizationManager.getResource(this.db));
+	}
+}
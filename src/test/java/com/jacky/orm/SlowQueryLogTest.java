@@ -0,0 +1,137 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+
+import com.jacky.domain.ORMUser;
+
+public class SlowQueryLogTest extends AbstractDbTest {
+
+	SlowQueryLog log;
+
+	@Override
+	int maxPoolSize() {
+		// one connection, and waiting for connection times out after 1s:
+		return 1;
+	}
+
+	@Before
+	public void setUp() {
+		// every statement is slow:
+		this.log = new SlowQueryLog(this.dataSource, 0, 100);
+		this.db.setSlowQueryLog(this.log);
+	}
+
+	@After
+	public void tearDown() {
+		this.log.close();
+	}
+
+	@Test
+	public void explainsWithoutWaitingForConnection() throws Exception {
+		long start = System.currentTimeMillis();
+		this.db.from(ORMUser.class).where("name = ?", "Bob").list();
+		assertTrue(System.currentTimeMillis() - start < 500);
+		assertTrue(this.log.awaitPending(5000));
+		SlowQuery query = find("SELECT * FROM users WHERE name = ?");
+		assertFalse(query.getPlan(), query.getPlan().startsWith("EXPLAIN failed"));
+	}
+
+	@Test
+	public void explainsAfterTransaction() throws Exception {
+		long start = System.currentTimeMillis();
+		this.tx.execute((status) -> {
+			this.db.from(ORMUser.class).where("name = ?", "Bob").list();
+			return this.db.from(ORMUser.class).where("email = ?", "bob@example.com").list();
+		});
+		assertTrue(System.currentTimeMillis() - start < 500);
+		assertTrue(this.log.awaitPending(5000));
+		SlowQuery query = find("SELECT * FROM users WHERE email = ?");
+		assertFalse(query.getPlan(), query.getPlan().startsWith("EXPLAIN failed"));
+	}
+
+	@Test
+	public void doesNotCacheFailedExplain() throws Exception {
+		String sql = "SELECT * FROM users WHERE createdAt > ?";
+		try (Connection conn = this.dataSource.getConnection()) {
+			// no connection for EXPLAIN:
+			this.log.record(sql, new Object[] { 1L }, 1_000_000);
+			assertTrue(this.log.awaitPending(5000));
+		}
+		assertTrue(find(sql).getPlan().startsWith("EXPLAIN failed"));
+		this.log.record(sql, new Object[] { 1L }, 1_000_000);
+		assertTrue(this.log.awaitPending(5000));
+		assertFalse(find(sql).getPlan().startsWith("EXPLAIN failed"));
+	}
+
+	@Test
+	public void writesFile() throws Exception {
+		Path dir = Files.createTempDirectory("slow-query");
+		Path file = dir.resolve("slow.log");
+		this.log.setFile(file.toString(), 1024 * 1024, 1);
+		this.db.from(ORMUser.class).where("name = ?", "Bob").list();
+		assertTrue(this.log.awaitPending(5000));
+		String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		assertTrue(content, content.contains("SELECT * FROM users WHERE name = ? [String]"));
+		assertEquals(0, this.log.getDiscarded());
+	}
+
+	@Test
+	public void recordsArgumentsOfJdbcTemplate() throws Exception {
+		SlowQueryJdbcTemplate jt = new SlowQueryJdbcTemplate(this.dataSource, this.log);
+		jt.queryForList("SELECT * FROM users WHERE name = ? AND createdAt > ?", "Bob", 1L);
+		assertTrue(this.log.awaitPending(5000));
+		assertEquals(Arrays.asList("String", "Long"),
+				find("SELECT * FROM users WHERE name = ? AND createdAt > ?").getParameterTypes());
+	}
+
+	@Test
+	public void doesNotLeakArgumentsOfFailedStatement() throws Exception {
+		SlowQueryJdbcTemplate jt = new SlowQueryJdbcTemplate(this.dataSource, this.log);
+		try {
+			jt.update("UPDATE users SET missing = ?", "Bob");
+			fail("DataAccessException expected");
+		} catch (DataAccessException e) {
+			// expected
+		}
+		try {
+			// fails before the statement is executed:
+			jt.queryForList((String) null, "Bob");
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		String sql = "UPDATE users SET name = name";
+		jt.execute(sql, (PreparedStatementCallback<Integer>) PreparedStatement::executeUpdate);
+		assertTrue(this.log.awaitPending(5000));
+		assertEquals(Collections.emptyList(), find(sql).getParameterTypes());
+	}
+
+	// newest record of sql:
+	private SlowQuery find(String sql) {
+		List<SlowQuery> recent = this.log.getRecent();
+		for (SlowQuery query : recent) {
+			if (query.getSql().equals(sql)) {
+				return query;
+			}
+		}
+		throw new AssertionError("Not recorded: " + sql + " in " + recent);
+	}
+}
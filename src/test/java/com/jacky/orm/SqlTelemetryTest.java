@@ -0,0 +1,140 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+
+import com.jacky.domain.ORMUser;
+
+public class SqlTelemetryTest extends AbstractDbTest {
+
+	@Test
+	public void recordsCallsAndRowsPerStatement() {
+		List<ORMUser> users = insertUsers(5);
+		assertEquals(5, this.db.from(ORMUser.class).list().size());
+		ORMUser user = users.get(0);
+		user.setName("Renamed");
+		this.db.update(user);
+		Mapper<ORMUser> mapper = this.db.getMapper(ORMUser.class);
+		StatementStats insert = stats(mapper.insertSQL);
+		assertEquals(5, insert.getCalls());
+		assertEquals(5, insert.getRows());
+		StatementStats select = stats("SELECT * FROM users");
+		assertEquals(1, select.getCalls());
+		assertEquals(5, select.getRows());
+		assertEquals(1, stats(mapper.updateSQL).getRows());
+		for (StatementStats stats : this.db.getSqlStats()) {
+			assertEquals(0, stats.getErrors());
+			assertEquals(stats.getCalls(), sum(stats.getHistogram()));
+			assertTrue(stats.getMaxNanos() > 0 && stats.getMaxNanos() <= stats.getTotalNanos());
+			assertTrue(stats.getPercentileMicros(99) > 0);
+		}
+	}
+
+	@Test
+	public void recordsErrors() {
+		insertUsers(1);
+		try {
+			this.db.from(ORMUser.class).where("createdAt / ? > 0", 0).list();
+			fail("DataAccessException expected");
+		} catch (DataAccessException e) {
+			// expected
+		}
+		StatementStats stats = stats("SELECT * FROM users WHERE createdAt / ? > 0");
+		assertEquals(1, stats.getCalls());
+		assertEquals(1, stats.getErrors());
+	}
+
+	@Test
+	public void sortsByTotalTimeAndResets() {
+		insertUsers(3);
+		this.db.from(ORMUser.class).list();
+		List<StatementStats> list = this.db.getSqlStats();
+		assertEquals(2, list.size());
+		assertTrue(list.get(0).getTotalNanos() >= list.get(1).getTotalNanos());
+		this.db.resetSqlStats();
+		assertTrue(this.db.getSqlStats().isEmpty());
+	}
+
+	@Test
+	public void bucketsArePowersOfTwoMicros() {
+		assertEquals(0, StatementStats.bucketOf(999));
+		assertEquals(1, StatementStats.bucketOf(1_000));
+		assertEquals(2, StatementStats.bucketOf(2_000));
+		assertEquals(2, StatementStats.bucketOf(3_999));
+		assertEquals(3, StatementStats.bucketOf(4_000));
+		assertEquals(StatementStats.BUCKETS - 1, StatementStats.bucketOf(Long.MAX_VALUE));
+		assertEquals(4, StatementStats.bucketUpperBoundMicros(2));
+		assertEquals(Long.MAX_VALUE, StatementStats.bucketUpperBoundMicros(StatementStats.BUCKETS - 1));
+		long[] histogram = new long[StatementStats.BUCKETS];
+		histogram[1] = 98;
+		histogram[5] = 2;
+		StatementStats stats = new StatementStats("sql", 100, 0, 0, 0, 20_000, histogram);
+		assertEquals(2, stats.getPercentileMicros(50));
+		assertEquals(2, stats.getPercentileMicros(98));
+		assertEquals(21, stats.getPercentileMicros(99));
+	}
+
+	@Test
+	public void boundsDistinctStatements() {
+		SqlTelemetry telemetry = new SqlTelemetry();
+		for (int i = 0; i < SqlTelemetry.MAX_STATEMENTS + 5; i++) {
+			telemetry.record("SELECT " + i, System.nanoTime(), 1, false);
+		}
+		List<StatementStats> list = telemetry.snapshot();
+		assertEquals(SqlTelemetry.MAX_STATEMENTS + 1, list.size());
+		StatementStats other = null;
+		for (StatementStats stats : list) {
+			if (stats.getSql().equals(SqlTelemetry.OTHER_SQL)) {
+				other = stats;
+			}
+		}
+		assertNotNull(other);
+		assertEquals(5, other.getCalls());
+	}
+
+	@Test
+	public void recordsConcurrentlyWithoutLosingCalls() throws Exception {
+		SqlTelemetry telemetry = new SqlTelemetry();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			futures.add(CompletableFuture.runAsync(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					telemetry.record("SELECT 1", System.nanoTime(), 2, i % 10 == 0);
+				}
+			}));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+		StatementStats stats = telemetry.snapshot().get(0);
+		assertEquals(40_000, stats.getCalls());
+		assertEquals(80_000, stats.getRows());
+		assertEquals(4_000, stats.getErrors());
+		assertEquals(40_000, sum(stats.getHistogram()));
+	}
+
+	private StatementStats stats(String sql) {
+		for (StatementStats stats : this.db.getSqlStats()) {
+			if (stats.getSql().equals(sql)) {
+				return stats;
+			}
+		}
+		throw new AssertionError("No telemetry of " + sql);
+	}
+
+	private static long sum(long[] values) {
+		long sum = 0;
+		for (long n : values) {
+			sum += n;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,98 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import com.jacky.domain.ORMUser;
+import com.zaxxer.hikari.HikariDataSource;
+
+public class StatementCacheTest extends AbstractDbTest {
+
+	@Override
+	int maxPoolSize() {
+		return 1;
+	}
+
+	@Before
+	public void setUp() {
+		insertUsers(5);
+	}
+
+	@Test
+	public void appliesMaxRowsOfJdbcTemplate() {
+		assertEquals(5, this.db.from(ORMUser.class).list().size());
+		this.jdbcTemplate.setMaxRows(2);
+		// same cached statement:
+		assertEquals(2, this.db.from(ORMUser.class).list().size());
+		this.jdbcTemplate.setMaxRows(-1);
+	}
+
+	@Test
+	public void appliesAndResetsTransactionTimeout() throws Exception {
+		this.tx.setTimeout(10);
+		this.tx.execute((status) -> this.db.from(ORMUser.class).list());
+		int timeout = cachedStatement().getQueryTimeout();
+		assertTrue("timeout = " + timeout, timeout > 0 && timeout <= 10);
+		this.db.from(ORMUser.class).list();
+		assertEquals(0, cachedStatement().getQueryTimeout());
+	}
+
+	@Test(expected = TransactionTimedOutException.class)
+	public void enforcesTransactionTimeout() {
+		// HSQLDB may abort a statement with 1 second timeout before it expires:
+		this.tx.setTimeout(2);
+		this.tx.execute((status) -> {
+			this.db.from(ORMUser.class).list();
+			try {
+				Thread.sleep(2100);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return this.db.from(ORMUser.class).list();
+		});
+	}
+
+	@Test
+	public void purgesStatementsOfClosedConnectionOnRelease() throws Exception {
+		StatementCache cache = new StatementCache(8);
+		String sql = "SELECT * FROM users";
+		Connection con1 = this.dataSource.getConnection();
+		try (HikariDataSource other = TestDb.dataSource(1); Connection con2 = other.getConnection()) {
+			cache.release(con1, sql, cache.prepare(con1, sql), true);
+			cache.release(con2, "VALUES (1)", cache.prepare(con2, "VALUES (1)"), true);
+			assertEquals(2, cache.caches.size());
+			// connection retired by the pool:
+			Connection physical = con1.unwrap(Connection.class);
+			physical.close();
+			cache.nextPurge = System.nanoTime();
+			// no new connection is seen:
+			cache.release(con2, "VALUES (1)", cache.prepare(con2, "VALUES (1)"), true);
+			assertEquals(1, cache.caches.size());
+			assertFalse(cache.caches.containsKey(physical));
+			assertEquals(1, cache.stats().getSize());
+		} finally {
+			JdbcUtils.closeConnection(con1);
+		}
+	}
+
+	private PreparedStatement cachedStatement() {
+		for (Map<String, PreparedStatement> cache : this.db.statementCache.caches.values()) {
+			for (Map.Entry<String, PreparedStatement> entry : cache.entrySet()) {
+				if (entry.getKey().startsWith("SELECT * FROM users")) {
+					return entry.getValue();
+				}
+			}
+		}
+		throw new AssertionError("statement is not cached");
+	}
+}
@@ -0,0 +1,72 @@
+package com.jacky.orm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jacky.domain.ORMUser;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * In-memory HSQLDB with users table for tests and benchmarks.
+ */
+final class TestDb {
+
+	static final AtomicInteger COUNTER = new AtomicInteger();
+
+	private TestDb() {
+	}
+
+	/**
+	 * Create pool of a new in-memory database.
+	 */
+	static HikariDataSource dataSource(int maxPoolSize) {
+		HikariConfig config = new HikariConfig();
+		config.setJdbcUrl("jdbc:hsqldb:mem:test" + COUNTER.incrementAndGet());
+		config.setUsername("sa");
+		config.setPassword("");
+		config.setMaximumPoolSize(maxPoolSize);
+		config.setConnectionTimeout(1000);
+		return new HikariDataSource(config);
+	}
+
+	static void createUsers(JdbcTemplate jdbcTemplate) {
+		createUsers(jdbcTemplate, false);
+	}
+
+	static void createUsers(JdbcTemplate jdbcTemplate, boolean nullableName) {
+		jdbcTemplate.update("CREATE TABLE users (id BIGINT IDENTITY NOT NULL PRIMARY KEY, "
+				+ "email VARCHAR(100) NOT NULL, password VARCHAR(100) NOT NULL, name VARCHAR(100)"
+				+ (nullableName ? "" : " NOT NULL") + ", createdAt BIGINT NOT NULL, UNIQUE (email))");
+	}
+
+	// table of test entity com.jacky.orm.entity.Document:
+	static void createDocuments(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.update("CREATE TABLE documents (id BIGINT IDENTITY NOT NULL PRIMARY KEY, "
+				+ "title VARCHAR(100) NOT NULL, updatedAt TIMESTAMP NOT NULL, data VARBINARY(100) NOT NULL)");
+	}
+
+	// table of test entity com.jacky.orm.entity.Sample:
+	static void createSamples(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.update("CREATE TABLE samples (id BIGINT IDENTITY NOT NULL PRIMARY KEY, "
+				+ "longValue BIGINT NOT NULL, longObject BIGINT, intValue INTEGER NOT NULL, intObject INTEGER, "
+				+ "boolValue BOOLEAN NOT NULL, boolObject BOOLEAN, doubleValue DOUBLE NOT NULL, doubleObject DOUBLE, "
+				+ "text VARCHAR(100), amount DECIMAL(10,2), createdAt TIMESTAMP, data VARBINARY(100))");
+	}
+
+	// table of test entity com.jacky.orm.entity.Article:
+	static void createArticles(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.update("CREATE TABLE articles (id BIGINT IDENTITY NOT NULL PRIMARY KEY, "
+				+ "title VARCHAR(100) NOT NULL, version BIGINT NOT NULL)");
+	}
+
+	static ORMUser user(String email, String name, long createdAt) {
+		ORMUser user = new ORMUser();
+		user.setEmail(email);
+		user.setPassword("password");
+		user.setName(name);
+		user.setCreatedAt(createdAt);
+		return user;
+	}
+}
@@ -0,0 +1,60 @@
+package com.jacky.orm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.jacky.domain.ORMUser;
+import com.jacky.service.ORMUserService;
+
+public class UpsertTest extends AbstractDbTest {
+
+	@Test
+	public void upsertsByUniqueKey() {
+		ORMUser bob = TestDb.user("bob@example.com", "Bob", 1);
+		this.db.insert(bob);
+		ORMUser bob2 = TestDb.user("bob@example.com", "Bob2", 2);
+		ORMUser alice = TestDb.user("alice@example.com", "Alice", 3);
+		UpsertResult result = this.db.upsertAll(Arrays.asList(bob2, alice));
+		assertEquals(1, result.getInserted());
+		assertEquals(1, result.getUpdated());
+		assertEquals(bob.getId(), bob2.getId());
+		assertEquals("Bob2", this.db.get(ORMUser.class, bob.getId()).getName());
+		assertEquals("alice@example.com", this.db.get(ORMUser.class, alice.getId()).getEmail());
+	}
+
+	@Test
+	public void registerOrUpdateReturnsStoredRow() throws Exception {
+		ORMUserService service = new ORMUserService();
+		Field field = ORMUserService.class.getDeclaredField("db");
+		field.setAccessible(true);
+		field.set(service, this.db);
+		ORMUser bob = TestDb.user("bob@example.com", "Bob", 1);
+		this.db.insert(bob);
+		ORMUser updated = service.registerOrUpdate("bob@example.com", "secret", "Bob2");
+		assertEquals(bob.getId(), updated.getId());
+		assertEquals("Bob2", updated.getName());
+		// createdAt is not updatable:
+		assertEquals(1, updated.getCreatedAt());
+		ORMUser inserted = service.registerOrUpdate("alice@example.com", "secret", "Alice");
+		assertEquals(inserted.getCreatedAt(), this.db.get(ORMUser.class, inserted.getId()).getCreatedAt());
+	}
+
+	@Test
+	public void rejectsGeneratedIdAsKey() {
+		ORMUser user = TestDb.user("bob@example.com", "Bob", 1);
+		user.setId(12345L);
+		try {
+			this.db.upsertAll(Collections.singletonList(user), "id");
+			fail("Expected IllegalArgumentException.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(0, this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class).intValue());
+	}
+}
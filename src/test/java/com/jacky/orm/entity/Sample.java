@@ -0,0 +1,152 @@
+package com.jacky.orm.entity;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Test entity with property of every supported column type.
+ */
+@Entity
+@Table(name = "samples")
+public class Sample {
+
+	private Long id;
+	private long longValue;
+	private Long longObject;
+	private int intValue;
+	private Integer intObject;
+	private boolean boolValue;
+	private Boolean boolObject;
+	private double doubleValue;
+	private Double doubleObject;
+	private String text;
+	private BigDecimal amount;
+	private Date createdAt;
+	private byte[] data;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(nullable = false, updatable = false)
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	@Column(nullable = false)
+	public long getLongValue() {
+		return longValue;
+	}
+
+	public void setLongValue(long longValue) {
+		this.longValue = longValue;
+	}
+
+	@Column
+	public Long getLongObject() {
+		return longObject;
+	}
+
+	public void setLongObject(Long longObject) {
+		this.longObject = longObject;
+	}
+
+	@Column(nullable = false)
+	public int getIntValue() {
+		return intValue;
+	}
+
+	public void setIntValue(int intValue) {
+		this.intValue = intValue;
+	}
+
+	@Column
+	public Integer getIntObject() {
+		return intObject;
+	}
+
+	public void setIntObject(Integer intObject) {
+		this.intObject = intObject;
+	}
+
+	@Column(nullable = false)
+	public boolean isBoolValue() {
+		return boolValue;
+	}
+
+	public void setBoolValue(boolean boolValue) {
+		this.boolValue = boolValue;
+	}
+
+	@Column
+	public Boolean getBoolObject() {
+		return boolObject;
+	}
+
+	public void setBoolObject(Boolean boolObject) {
+		this.boolObject = boolObject;
+	}
+
+	@Column(nullable = false)
+	public double getDoubleValue() {
+		return doubleValue;
+	}
+
+	public void setDoubleValue(double doubleValue) {
+		this.doubleValue = doubleValue;
+	}
+
+	@Column
+	public Double getDoubleObject() {
+		return doubleObject;
+	}
+
+	public void setDoubleObject(Double doubleObject) {
+		this.doubleObject = doubleObject;
+	}
+
+	@Column(length = 100)
+	public String getText() {
+		return text;
+	}
+
+	public void setText(String text) {
+		this.text = text;
+	}
+
+	@Column(precision = 10, scale = 2)
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	public void setAmount(BigDecimal amount) {
+		this.amount = amount;
+	}
+
+	@Column
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	@Column
+	public byte[] getData() {
+		return data;
+	}
+
+	public void setData(byte[] data) {
+		this.data = data;
+	}
+}